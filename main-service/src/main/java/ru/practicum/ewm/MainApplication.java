@@ -1,11 +1,25 @@
 package ru.practicum.ewm;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationExcludeFilter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 
-
-@SpringBootApplication
+// То же, что @SpringBootApplication, но без пакета сервера статистики: во встроенном режиме его классы лежат
+// на classpath, а живут в собственном контексте (EmbeddedStatClient)
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(excludeFilters = {
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = AutoConfigurationExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.REGEX, pattern = "ru\\.practicum\\.ewm\\.stats\\.server\\..*")})
+@EnableJpaRepositories(excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX,
+        pattern = "ru\\.practicum\\.ewm\\.stats\\.server\\..*"))
 public class MainApplication {
 
     public static void main(String[] args) {
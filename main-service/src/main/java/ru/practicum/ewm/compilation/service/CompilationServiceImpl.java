@@ -20,6 +20,7 @@ import ru.practicum.ewm.stats.dto.StatsDto;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -121,19 +122,16 @@ public class CompilationServiceImpl implements CompilationService {
         }
         LocalDateTime minTime = events.stream().map(Event::getCreatedOn).min(Comparator.comparing(Function.identity())).get();
         List<String> urisList = events.stream().map(event -> "/events/" + event.getId()).toList();
-        String uris = String.join(", ", urisList);
-        List<StatsDto> statsList = statClient.getStats(minTime.minusSeconds(1), LocalDateTime.now(), uris, false);
-        return events.stream().map(event -> {
-                    Optional<StatsDto> result = statsList.stream()
-                            .filter(statsDto -> statsDto.getUri().equals("/events/" + event.getId()))
-                            .findFirst();
-                    if (result.isPresent()) {
-                        return EventMapper.mapToShortDto(event, result.get().getHits());
-                    } else {
-                        return EventMapper.mapToShortDto(event, 0L);
-                    }
-                })
+        CompletableFuture<List<StatsDto>> stats = statClient.getStatsAsync(minTime.minusSeconds(1),
+                LocalDateTime.now(), urisList, false);
+        // пока идёт запрос статистики, маппинг подгружает категории и инициаторов событий
+        List<EventShortDto> result = events.stream()
+                .map(event -> EventMapper.mapToShortDto(event, 0L))
                 .collect(Collectors.toList());
+        Map<String, Long> views = stats.join().stream()
+                .collect(Collectors.toMap(StatsDto::getUri, StatsDto::getHits, Math::max));
+        result.forEach(dto -> dto.setViews(views.getOrDefault("/events/" + dto.getId(), 0L)));
+        return result;
     }
 }
 
@@ -0,0 +1,67 @@
+package ru.practicum.ewm.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.ewm.error.ErrorResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// С виртуальными потоками Tomcat не ограничивает число одновременно обрабатываемых запросов, и тысячи
+// запросов ждали бы соединение из пула Hikari до его таймаута. Фильтр пропускает не больше
+// ewm.bulkhead.max-concurrent-requests, остальные ждут ewm.bulkhead.timeout и получают 503
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class BulkheadFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+
+    public BulkheadFilter(ObjectMapper objectMapper,
+                          @Value("${ewm.bulkhead.max-concurrent-requests:64}") int maxConcurrentRequests,
+                          @Value("${ewm.bulkhead.timeout:PT2S}") Duration timeout) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("Запрос {} {} отклонён: превышено число одновременных запросов", request.getMethod(),
+                    request.getRequestURI());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorResponse("Сервис перегружен, повторите запрос позже"));
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -34,6 +34,8 @@ import ru.practicum.ewm.user.repository.UserRepository;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Transactional(readOnly = true)
@@ -85,10 +87,8 @@ public class EventServiceImpl implements EventService {
                 .map(event -> "/events/" + event.getId())
                 .toList();
 
-        String uris = String.join(", ", urisList);
-
         List<StatsDto> statsList = statClient.getStats(events.getFirst().getCreatedOn().minusSeconds(1),
-                LocalDateTime.now(), uris, false);
+                LocalDateTime.now(), urisList, false);
 
         return events.stream().map(event -> {
                     Optional<StatsDto> result = statsList.stream()
@@ -218,16 +218,19 @@ public class EventServiceImpl implements EventService {
         if (events.isEmpty()) {
             return new ArrayList<>();
         }
+        // хит на /events не влияет на просмотры событий, поэтому отправляется параллельно с остальными запросами
+        CompletableFuture<String> hit = saveHitAsync(httpServletRequest);
 
         List<String> urisList = events
                 .stream()
                 .map(event -> "/events/" + event.getId())
                 .toList();
 
-        String uris = String.join(", ", urisList);
-
-        List<StatsDto> statsList = statClient.getStats(events.getFirst().getCreatedOn().minusSeconds(1),
-                LocalDateTime.now(), uris, false);
+        CompletableFuture<List<StatsDto>> stats = statClient.getStatsAsync(
+                events.getFirst().getCreatedOn().minusSeconds(1), LocalDateTime.now(), urisList, false);
+        Map<Long, List<ParticipationRequest>> confirmedRequests = requestService
+                .prepareConfirmedRequests(events.stream().map(Event::getId).toList());
+        List<StatsDto> statsList = stats.join();
 
         List<EventShortDto> result = events.stream().map(event -> {
 
@@ -244,27 +247,13 @@ public class EventServiceImpl implements EventService {
             case VIEWS -> resultList.sort(Comparator.comparing(EventShortDto::getViews).reversed());
         }
 
-        var ids = resultList.stream().map(EventShortDto::getId).toList();
-        Map<Long, List<ParticipationRequest>> confirmedRequests = requestService.prepareConfirmedRequests(ids);
-
         resultList.forEach(r -> {
             var requests = confirmedRequests.get(r.getId());
 
             r.setConfirmedRequests(requests != null ? requests.size() : 0);
         });
 
-        try {
-            EndpointHitDto requestBody = EndpointHitDto
-                    .builder().app(serviceName)
-                    .ip(httpServletRequest.getRemoteAddr())
-                    .uri(httpServletRequest.getRequestURI())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-            statClient.saveHit(requestBody);
-            log.info("Сохранение статистики.");
-        } catch (SaveStatsException e) {
-            log.error("Не удалось сохранить статистику.");
-        }
+        awaitHit(hit);
 
         return resultList;
     }
@@ -280,28 +269,17 @@ public class EventServiceImpl implements EventService {
             throw new NotFoundException("Посмотреть можно только опубликованное событие.");
 
 
-        Optional<StatsDto> stat = statClient.getStats(event.getCreatedOn().minusSeconds(1),
-                        LocalDateTime.now(), "/events/" + event.getId(), true).stream().findFirst();
-
-        EventFullDto result = EventMapper.mapToFullDto(event, stat.isPresent() ? stat.get().getHits() : 0L);
-
+        CompletableFuture<List<StatsDto>> stats = statClient.getStatsAsync(event.getCreatedOn().minusSeconds(1),
+                LocalDateTime.now(), List.of("/events/" + event.getId()), true);
         List<ParticipationRequest> confirmedRequests = requestService
                 .prepareConfirmedRequests(List.of(event.getId())).get(event.getId());
+        Optional<StatsDto> stat = stats.join().stream().findFirst();
+
+        EventFullDto result = EventMapper.mapToFullDto(event, stat.isPresent() ? stat.get().getHits() : 0L);
         result.setConfirmedRequests(confirmedRequests != null ? confirmedRequests.size() : 0);
 
-        try {
-            EndpointHitDto requestBody = EndpointHitDto
-                    .builder().app(serviceName)
-                    .ip(httpServletRequest.getRemoteAddr())
-                    .uri(httpServletRequest.getRequestURI())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            statClient.saveHit(requestBody);
-            log.info("Сохранение статистики.");
-        } catch (SaveStatsException e) {
-            log.error("Не удалось сохранить статистику.");
-        }
+        // хит на само событие отправляется после чтения просмотров, иначе он попал бы в текущий ответ
+        awaitHit(saveHitAsync(httpServletRequest));
 
         return result;
     }
@@ -334,12 +312,11 @@ public class EventServiceImpl implements EventService {
                 .map(event -> "/events/" + event.getId())
                 .toList();
 
-        String uris = String.join(", ", urisList);
-
-        List<StatsDto> statsList = statClient.getStats(events.getFirst().getCreatedOn().minusSeconds(1),
-                LocalDateTime.now(), uris, false);
+        CompletableFuture<List<StatsDto>> stats = statClient.getStatsAsync(
+                events.getFirst().getCreatedOn().minusSeconds(1), LocalDateTime.now(), urisList, false);
         var ids = events.stream().map(Event::getId).toList();
         Map<Long, List<ParticipationRequest>> confirmedRequests = requestService.prepareConfirmedRequests(ids);
+        List<StatsDto> statsList = stats.join();
 
         return events.stream().map(event -> {
 
@@ -413,13 +390,13 @@ public class EventServiceImpl implements EventService {
         }
         event = eventRepository.save(event);
 
-        Optional<StatsDto> stat = statClient.getStats(event.getCreatedOn().minusSeconds(1), LocalDateTime.now(),
-                        "/events/" + event.getId(), false).stream().findFirst();
-
-        EventFullDto result = EventMapper.mapToFullDto(event, stat.isPresent() ? stat.get().getHits() : 0L);
-
+        CompletableFuture<List<StatsDto>> stats = statClient.getStatsAsync(event.getCreatedOn().minusSeconds(1),
+                LocalDateTime.now(), List.of("/events/" + event.getId()), false);
         List<ParticipationRequest> confirmedRequests = requestService
                 .prepareConfirmedRequests(List.of(event.getId())).get(event.getId());
+        Optional<StatsDto> stat = stats.join().stream().findFirst();
+
+        EventFullDto result = EventMapper.mapToFullDto(event, stat.isPresent() ? stat.get().getHits() : 0L);
         result.setConfirmedRequests(confirmedRequests != null ? confirmedRequests.size() : 0);
 
         return result;
@@ -532,4 +509,23 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    // Данные запроса читаются в вызывающем потоке: после ответа контейнер может переиспользовать объект запроса
+    private CompletableFuture<String> saveHitAsync(HttpServletRequest httpServletRequest) {
+        EndpointHitDto requestBody = EndpointHitDto
+                .builder().app(serviceName)
+                .ip(httpServletRequest.getRemoteAddr())
+                .uri(httpServletRequest.getRequestURI())
+                .timestamp(LocalDateTime.now())
+                .build();
+        return statClient.saveHitAsync(requestBody);
+    }
+
+    private void awaitHit(CompletableFuture<String> hit) {
+        try {
+            hit.join();
+            log.info("Сохранение статистики.");
+        } catch (CompletionException e) {
+            log.error("Не удалось сохранить статистику.", e.getCause());
+        }
+    }
 }
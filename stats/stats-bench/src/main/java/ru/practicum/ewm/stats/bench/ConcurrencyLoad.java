@@ -0,0 +1,84 @@
+package ru.practicum.ewm.stats.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Нагрузочный тест закрытой модели: clients клиентов в виртуальных потоках без пауз шлют GET на url в течение
+// duration, печатаются пропускная способность, p50/p99 и число ошибок. Сервис прогоняется дважды,
+// с spring.threads.virtual.enabled=false и true:
+// java -cp benchmarks.jar ru.practicum.ewm.stats.bench.ConcurrencyLoad http://localhost:8080/events 2000 PT60S
+public class ConcurrencyLoad {
+
+    public static void main(String[] args) throws InterruptedException {
+        URI url = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/events");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Duration duration = args.length > 2 ? Duration.parse(args[2]) : Duration.ofSeconds(60);
+        Duration warmUp = duration.dividedBy(6);
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(30)).GET().build();
+        long measureFrom = System.nanoTime() + warmUp.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int index = i;
+                executor.submit(() -> {
+                    long[] samples = new long[1024];
+                    while (System.nanoTime() < stopAt) {
+                        long started = System.nanoTime();
+                        boolean ok;
+                        try {
+                            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        if (started < measureFrom) {
+                            continue;
+                        }
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (counts[index] == samples.length) {
+                            samples = Arrays.copyOf(samples, samples.length * 2);
+                        }
+                        samples[counts[index]++] = System.nanoTime() - started;
+                    }
+                    latencies[index] = samples;
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(duration.plus(warmUp).plusMinutes(1).toSeconds(), TimeUnit.SECONDS);
+        }
+        long total = Arrays.stream(counts).asLongStream().sum();
+        long[] all = new long[(int) total];
+        int position = 0;
+        for (int i = 0; i < clients; i++) {
+            System.arraycopy(latencies[i], 0, all, position, counts[i]);
+            position += counts[i];
+        }
+        Arrays.sort(all);
+        System.out.printf("клиентов %d, успешных запросов %d, ошибок %d%n", clients, total, errors.get());
+        System.out.printf("пропускная способность %.1f запросов/с%n", total / (double) duration.toSeconds());
+        if (all.length > 0) {
+            System.out.printf("p50 %.1f мс, p99 %.1f мс%n", percentile(all, 0.5), percentile(all, 0.99));
+        }
+    }
+
+    private static double percentile(long[] sorted, double rank) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(rank * sorted.length) - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.practicum.ewm.stats.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Задержка /stats по сырым хитам в зависимости от длины окна, против запущенного сервиса статистики.
+// Сервис запускается с выключенными stats.rollup, stats.totals, stats.sketch и stats.recent, чтобы запрос шёл
+// в endpoint_hit, и прогоняется дважды: с stats.parallel.enabled=true и false. Хиты за год до BASE загружаются
+// один раз: java -cp benchmarks.jar ru.practicum.ewm.stats.bench.WindowQueryBenchmark 5000000
+// Запуск: java -Dstats.bench.url=http://localhost:9090 -jar benchmarks.jar WindowQueryBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WindowQueryBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BATCH = 10000;
+
+    @Param({"7", "30", "90", "365"})
+    private int windowDays;
+
+    @Param({"false", "true"})
+    private boolean unique;
+
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("stats.bench.url", "http://localhost:9090");
+        client = httpClient();
+        LocalDateTime end = BASE.minusSeconds(1);
+        request = HttpRequest.newBuilder(URI.create(url + "/stats?start=" + encode(BASE.minusDays(windowDays)) +
+                        "&end=" + encode(end) + "&unique=" + unique + "&approximate=true"))
+                .GET()
+                .build();
+    }
+
+    @Benchmark
+    public String stats() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ответ " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    // Повторная загрузка удвоит хиты
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String url = System.getProperty("stats.bench.url", "http://localhost:9090");
+        long hits = args.length > 0 ? Long.parseLong(args[0]) : 5000000;
+        HttpClient client = httpClient();
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new ParameterNamesModule());
+        Random random = new Random(42);
+        for (long sent = 0; sent < hits; sent += BATCH) {
+            List<EndpointHitDto> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH && sent + i < hits; i++) {
+                batch.add(new EndpointHitDto("ewm-service", "/events/" + (1 + (int) (Math.pow(random.nextDouble(), 3)
+                        * 20000)), "10.0." + random.nextInt(256) + "." + random.nextInt(256),
+                        BASE.minusSeconds(1 + random.nextInt(365 * 24 * 3600))));
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/hit/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Ответ " + response.statusCode() + ": " + response.body());
+            }
+        }
+        System.out.printf("Загружено хитов: %d%n", hits);
+    }
+
+    // Без версии клиент просит h2c через Upgrade, и Tomcat отвечает на запрос с телом 413
+    private static HttpClient httpClient() {
+        return HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    private static String encode(LocalDateTime time) {
+        return URLEncoder.encode(time.format(FORMAT), StandardCharsets.UTF_8);
+    }
+}
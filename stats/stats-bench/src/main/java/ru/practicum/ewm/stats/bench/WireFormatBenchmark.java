@@ -0,0 +1,167 @@
+package ru.practicum.ewm.stats.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.dto.wire.StatsWireReader;
+import ru.practicum.ewm.stats.dto.wire.StatsWireWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Сравнение Jackson и двоичного формата: время сериализации и разбора списка StatsDto и пакета хитов.
+// Размеры сообщений без сжатия и с gzip печатаются при запуске main.
+// Запуск: mvn -P bench -pl stats/stats-bench -am package && java -jar stats/stats-bench/target/benchmarks.jar
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final TypeReference<List<StatsDto>> STATS_LIST = new TypeReference<>() {
+    };
+    private static final TypeReference<List<EndpointHitDto>> HIT_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1000"})
+    private int rows;
+
+    private ObjectMapper objectMapper;
+    private List<StatsDto> stats;
+    private List<EndpointHitDto> hits;
+    private byte[] statsJson;
+    private byte[] statsWire;
+    private byte[] hitsJson;
+    private byte[] hitsWire;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new ParameterNamesModule());
+        stats = stats(rows);
+        hits = hits(rows);
+        statsJson = objectMapper.writeValueAsBytes(stats);
+        statsWire = writeStats(stats);
+        hitsJson = objectMapper.writeValueAsBytes(hits);
+        hitsWire = writeHits(hits);
+    }
+
+    @Benchmark
+    public byte[] statsJacksonWrite() throws IOException {
+        return objectMapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] statsWireWrite() throws IOException {
+        return writeStats(stats);
+    }
+
+    @Benchmark
+    public List<StatsDto> statsJacksonRead() throws IOException {
+        return objectMapper.readValue(statsJson, STATS_LIST);
+    }
+
+    @Benchmark
+    public List<StatsDto> statsWireRead() throws IOException {
+        StatsWireReader reader = new StatsWireReader(new ByteArrayInputStream(statsWire));
+        List<StatsDto> result = new ArrayList<>();
+        while (reader.hasNext()) {
+            result.add(reader.readStats());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public byte[] hitsJacksonWrite() throws IOException {
+        return objectMapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public byte[] hitsWireWrite() throws IOException {
+        return writeHits(hits);
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> hitsJacksonRead() throws IOException {
+        return objectMapper.readValue(hitsJson, HIT_LIST);
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> hitsWireRead() throws IOException {
+        StatsWireReader reader = new StatsWireReader(new ByteArrayInputStream(hitsWire));
+        List<EndpointHitDto> result = new ArrayList<>();
+        while (reader.hasNext()) {
+            result.add(reader.readHit());
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        WireFormatBenchmark benchmark = new WireFormatBenchmark();
+        benchmark.rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        benchmark.setUp();
+        System.out.printf("%-16s %10s %10s%n", "сообщение", "байт", "gzip");
+        print("stats json", benchmark.statsJson);
+        print("stats wire", benchmark.statsWire);
+        print("hits json", benchmark.hitsJson);
+        print("hits wire", benchmark.hitsWire);
+    }
+
+    private static void print(String name, byte[] bytes) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(bytes);
+        }
+        System.out.printf("%-16s %10d %10d%n", name, bytes.length, gzipped.size());
+    }
+
+    private static byte[] writeStats(List<StatsDto> stats) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireWriter writer = new StatsWireWriter(out);
+        for (StatsDto dto : stats) {
+            writer.writeStats(dto);
+        }
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static byte[] writeHits(List<EndpointHitDto> hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireWriter writer = new StatsWireWriter(out);
+        for (EndpointHitDto hit : hits) {
+            writer.writeHit(hit);
+        }
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static List<StatsDto> stats(int rows) {
+        List<StatsDto> result = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            result.add(new StatsDto("ewm-service", "/events/" + i, (long) (rows - i) * 17));
+        }
+        return result;
+    }
+
+    private static List<EndpointHitDto> hits(int rows) {
+        List<EndpointHitDto> result = new ArrayList<>(rows);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < rows; i++) {
+            result.add(new EndpointHitDto("ewm-service", "/events/" + i % 50, "192.168.0." + i % 250,
+                    start.plusSeconds(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package ru.practicum.ewm.stats.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Асинхронный режим клиента (client.mode=async): saveHit кладёт хит в ограниченный буфер без блокировок
+// и сразу возвращается, фоновый поток отправляет хиты пакетами в /hit/batch, когда набралось
+// client.async.batch-size или прошло client.async.linger. Неудачный пакет не повторяется и считается
+// потерянным. При остановке буфер дописывается не дольше client.async.drain-timeout.
+// Из нескольких реализаций StatClient внедряется та, у которой меньше @Priority
+@Service
+@Priority(2)
+@ConditionalOnProperty(name = "client.mode", havingValue = "async")
+@Slf4j
+public class BufferedStatClient implements StatClient {
+    private static final String QUEUED = "Информация поставлена в очередь";
+    private static final String DROPPED = "Буфер статистики переполнен, хит отброшен";
+
+    private final StatTransport delegate;
+    private final ConcurrentLinkedQueue<EndpointHitDto> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Duration drainTimeout;
+    private final HitOverflowPolicy overflowPolicy;
+    private final Counter enqueued;
+    private final Counter sent;
+    private final MeterRegistry meterRegistry;
+    private final Timer flushTimer;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile long drainDeadline = Long.MAX_VALUE;
+
+    public BufferedStatClient(StatTransport delegate, MeterRegistry meterRegistry,
+                              @Value("${client.async.capacity:10000}") int capacity,
+                              @Value("${client.async.batch-size:500}") int batchSize,
+                              @Value("${client.async.linger:200ms}") Duration linger,
+                              @Value("${client.async.overflow-policy:DROP_NEWEST}") HitOverflowPolicy overflowPolicy,
+                              @Value("${client.async.drain-timeout:10s}") Duration drainTimeout) {
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.overflowPolicy = overflowPolicy;
+        this.meterRegistry = meterRegistry;
+        this.enqueued = meterRegistry.counter("stats.client.hits.enqueued");
+        this.sent = meterRegistry.counter("stats.client.hits.sent");
+        this.flushTimer = meterRegistry.timer("stats.client.flush");
+        meterRegistry.gauge("stats.client.buffer.size", size);
+        this.flusher = new Thread(this::run, "stat-client-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public String saveHit(EndpointHitDto requestBody) {
+        if (!running) {
+            return delegate.saveHit(requestBody);
+        }
+        if (!tryEnqueue(requestBody)) {
+            switch (overflowPolicy) {
+                case CALLER_RUNS -> {
+                    return delegate.saveHit(requestBody);
+                }
+                case DROP_OLDEST -> {
+                    // размер буфера не меняется: старейший хит заменяется новым
+                    if (buffer.poll() != null) {
+                        buffer.offer(requestBody);
+                        dropped("overflow", 1);
+                    } else if (!tryEnqueue(requestBody)) {
+                        dropped("overflow", 1);
+                        return DROPPED;
+                    }
+                }
+                default -> {
+                    dropped("overflow", 1);
+                    return DROPPED;
+                }
+            }
+        }
+        enqueued.increment();
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return QUEUED;
+    }
+
+    // Постановка в буфер не блокирует, отдельный поток не нужен
+    @Override
+    public CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody) {
+        return CompletableFuture.completedFuture(saveHit(requestBody));
+    }
+
+    @Override
+    public HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody) {
+        return delegate.saveHits(requestBody);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique) {
+        return delegate.getStats(start, end, uris, unique);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        return delegate.getStats(start, end, uris, unique);
+    }
+
+    @Override
+    public CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                           Collection<String> uris, boolean unique) {
+        return delegate.getStatsAsync(start, end, uris, unique);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(drainTimeout.plusSeconds(1).toMillis());
+    }
+
+    private boolean tryEnqueue(EndpointHitDto hit) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        buffer.offer(hit);
+        return true;
+    }
+
+    private void run() {
+        while (running || size.get() > 0) {
+            if (running && size.get() < batchSize) {
+                LockSupport.parkNanos(this, lingerNanos);
+            }
+            if (!running && System.nanoTime() > drainDeadline) {
+                int left = size.getAndSet(0);
+                buffer.clear();
+                dropped("shutdown", left);
+                log.warn("Не успели отправить {} хитов статистики при остановке", left);
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+            EndpointHitDto hit;
+            while (batch.size() < batchSize && (hit = buffer.poll()) != null) {
+                batch.add(hit);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            size.addAndGet(-batch.size());
+            send(batch);
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        try {
+            HitBatchResponseDto response = flushTimer.recordCallable(() -> delegate.saveHits(batch));
+            sent.increment(response.getAccepted());
+            if (response.getRejected() > 0) {
+                dropped("rejected", response.getRejected());
+            }
+        } catch (Exception e) {
+            dropped("error", batch.size());
+            log.warn("Не удалось отправить пакет из {} хитов статистики", batch.size(), e);
+        }
+    }
+
+    private void dropped(String reason, long hits) {
+        meterRegistry.counter("stats.client.hits.dropped", "reason", reason).increment(hits);
+    }
+}
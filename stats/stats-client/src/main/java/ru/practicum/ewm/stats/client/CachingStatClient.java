@@ -0,0 +1,166 @@
+package ru.practicum.ewm.stats.client;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.exceptions.StatsUnavailableException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Кэш чтения статистики (client.cache.enabled=true). Ключ - start, отсортированный набор uri и unique,
+// значение - ответ на момент загрузки (end = now). Одновременные промахи по одному ключу ждут один запрос,
+// после client.cache.refresh-after ответ обновляется в фоне, а старый отдаётся до client.cache.ttl.
+// Запросы с end в прошлом дальше ttl идут мимо кэша. Неудачное фоновое обновление оставляет прежний ответ.
+// Хиты отправляются асинхронным клиентом, если он включён
+@Service
+@Priority(1)
+@Slf4j
+@ConditionalOnProperty(name = "client.cache.enabled", havingValue = "true")
+public class CachingStatClient implements StatClient {
+    private final StatTransport reader;
+    private final StatClient writer;
+    private final Duration ttl;
+    private final ExecutorService loadExecutor;
+    private final AsyncLoadingCache<StatsKey, CachedStats> cache;
+    private final Timer staleness;
+
+    public CachingStatClient(StatTransport reader, ObjectProvider<BufferedStatClient> buffered,
+                             MeterRegistry meterRegistry,
+                             @Value("${client.cache.max-size:10000}") long maxSize,
+                             @Value("${client.cache.ttl:PT5S}") Duration ttl,
+                             @Value("${client.cache.refresh-after:PT1S}") Duration refreshAfter,
+                             @Value("${client.cache.threads:4}") int threads,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.reader = reader;
+        StatClient bufferedWriter = buffered.getIfAvailable();
+        this.writer = bufferedWriter != null ? bufferedWriter : reader;
+        this.ttl = ttl;
+        this.loadExecutor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threads, Thread.ofPlatform().daemon().name("stats-cache-", 0)
+                .factory());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .executor(loadExecutor)
+                .recordStats()
+                .buildAsync(this::load);
+        this.staleness = meterRegistry.timer("stats.client.cache.staleness");
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "stats-client");
+    }
+
+    @PreDestroy
+    public void close() {
+        loadExecutor.shutdownNow();
+    }
+
+    @Override
+    public String saveHit(EndpointHitDto requestBody) {
+        return writer.saveHit(requestBody);
+    }
+
+    @Override
+    public CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody) {
+        return writer.saveHitAsync(requestBody);
+    }
+
+    @Override
+    public HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody) {
+        return writer.saveHits(requestBody);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique) {
+        List<String> list = uris == null || uris.isBlank() ? List.of()
+                : Arrays.stream(uris.split(",")).map(String::trim).filter(uri -> !uri.isEmpty()).toList();
+        return getStats(start, end, list, unique, ttl);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        return getStats(start, end, uris, unique, ttl);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique,
+                                   Duration maxAge) {
+        try {
+            return getStatsAsync(start, end, uris, unique, maxAge).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                           Collection<String> uris, boolean unique) {
+        return getStatsAsync(start, end, uris, unique, ttl);
+    }
+
+    // Попадание в кэш завершается сразу в вызывающем потоке, промах ждёт общую загрузку ключа
+    private CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                            Collection<String> uris, boolean unique,
+                                                            Duration maxAge) {
+        if (end.isBefore(LocalDateTime.now().minus(ttl))) {
+            return reader.getStatsAsync(start, end, uris, unique);
+        }
+        StatsKey key = new StatsKey(start, List.copyOf(new TreeSet<>(uris)), unique);
+        return cache.get(key)
+                .thenCompose(cached -> cached.age().compareTo(maxAge) <= 0
+                        ? CompletableFuture.completedFuture(cached)
+                        // обновления одного ключа не дублируются: второй вызов получит уже идущую загрузку
+                        : cache.synchronous().refresh(key).exceptionally(e -> {
+                            log.warn("Не удалось обновить статистику, отдан ответ возрастом {}", cached.age(), e);
+                            return cached;
+                        }))
+                .thenApply(cached -> {
+                    staleness.record(cached.age());
+                    return cached.stats();
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof StatsUnavailableException) {
+                        log.warn("Статистика просмотров недоступна, просмотры считаются нулевыми: {}",
+                                cause.getMessage());
+                        return List.of();
+                    }
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                });
+    }
+
+    private CachedStats load(StatsKey key) {
+        return new CachedStats(List.copyOf(reader.fetchStats(key.start(), LocalDateTime.now(), key.uris(),
+                key.unique())), System.nanoTime());
+    }
+
+    private record StatsKey(LocalDateTime start, List<String> uris, boolean unique) {
+    }
+
+    private record CachedStats(List<StatsDto> stats, long loadedAt) {
+
+        Duration age() {
+            return Duration.ofNanos(System.nanoTime() - loadedAt);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.ewm.stats.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Кольцо согласованного хеширования: каждый шард занимает virtualNodes точек, uri принадлежит шарду
+// ближайшей точки по часовой стрелке. Добавленный шард забирает у остальных только часть их uri
+class HashRing {
+    private final TreeMap<Long, Integer> points = new TreeMap<>();
+
+    HashRing(List<String> shards, int virtualNodes) {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                points.put(hash(shards.get(shard) + "#" + point), shard);
+            }
+        }
+    }
+
+    int shardOf(String uri) {
+        Map.Entry<Long, Integer> owner = points.ceilingEntry(hash(uri));
+        return (owner != null ? owner : points.firstEntry()).getValue();
+    }
+
+    // Первые 8 байт MD5 не зависят от JVM, поэтому все экземпляры сервиса делят uri одинаково
+    private static long hash(String key) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8)))
+                    .getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
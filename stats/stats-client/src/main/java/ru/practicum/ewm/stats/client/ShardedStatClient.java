@@ -0,0 +1,356 @@
+package ru.practicum.ewm.stats.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchCountDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.exceptions.StatsUnavailableException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Шардирование (client.sharding.enabled=true): client.sharding.nodes - шарды через запятую, реплики шарда
+// через '|', первой идёт основная, по её адресу шард стоит на кольце. У каждой реплики своё хранилище.
+// Хит пишется во все реплики шарда своего uri, чтение расходится параллельно по шардам запрошенных uri,
+// а запрос без uri или с шаблоном - по всем шардам, и хиты складываются. Если реплика не ответила за
+// client.sharding.hedge-delay, тот же запрос получает следующая реплика шарда и берётся первый ответ.
+// Шард, отказавший целиком, даёт нулевые просмотры
+@Service
+@Priority(3)
+@ConditionalOnProperty(name = "client.sharding.enabled", havingValue = "true")
+@Slf4j
+public class ShardedStatClient implements StatTransport {
+    private static final String UNAVAILABLE = "Сервис статистики недоступен, хит не сохранён";
+
+    private final List<List<StatClientImpl>> shards;
+    private final HashRing ring;
+    private final Set<StatClientImpl> lagging = ConcurrentHashMap.newKeySet();
+    private final long hedgeDelayNanos;
+    private final ExecutorService callExecutor;
+    private final Counter hedges;
+    private final MeterRegistry meterRegistry;
+
+    public ShardedStatClient(StatClientImpl template,
+                             @Value("${client.sharding.nodes}") String nodes,
+                             @Value("${client.sharding.virtual-nodes:128}") int virtualNodes,
+                             @Value("${client.sharding.hedge-delay:PT0.05S}") Duration hedgeDelay,
+                             @Value("${client.async-calls.threads:16}") int callThreads,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                             MeterRegistry meterRegistry) {
+        this.shards = Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(shard -> !shard.isEmpty())
+                .map(shard -> Arrays.stream(shard.split("\\|")).map(String::trim).map(template::forNode).toList())
+                .toList();
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("Не задан ни один шард в client.sharding.nodes");
+        }
+        this.ring = new HashRing(shards.stream().map(replicas -> replicas.get(0).getServerUrl()).toList(),
+                virtualNodes);
+        this.hedgeDelayNanos = hedgeDelay.toNanos();
+        // запрос шарда блокирует поток до ответа, поэтому пул отдельный от пулов клиентов узлов
+        this.callExecutor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(callThreads, Thread.ofPlatform().daemon().name("stats-shard-", 0)
+                .factory());
+        this.hedges = meterRegistry.counter("stats.client.sharding.hedges");
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeCollectionSize("stats.client.sharding.lagging", List.of(), lagging);
+        log.info("Статистика разделена на {} шардов", shards.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        callExecutor.shutdownNow();
+        shards.forEach(replicas -> replicas.forEach(StatClientImpl::close));
+    }
+
+    @Override
+    public String saveHit(EndpointHitDto requestBody) {
+        try {
+            return join(saveHitToShard(requestBody));
+        } catch (StatsUnavailableException e) {
+            return notSaved(requestBody, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody) {
+        return saveHitToShard(requestBody).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof StatsUnavailableException unavailable) {
+                return notSaved(requestBody, unavailable);
+            }
+            throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+        });
+    }
+
+    // Пакет делится по шардам. Хиты шарда, ни одна реплика которого их не приняла, считаются отклонёнными,
+    // отказ бросается, только если не принял ни один шард
+    @Override
+    public HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody) {
+        Map<Integer, List<EndpointHitDto>> parts = requestBody.stream()
+                .collect(Collectors.groupingBy(hit -> ring.shardOf(hit.getUri())));
+        Map<Integer, CompletableFuture<HitBatchResponseDto>> responses = new HashMap<>();
+        parts.forEach((shard, hits) -> responses.put(shard, writeAll(shards.get(shard),
+                replica -> replica.saveHits(hits))));
+        long accepted = 0;
+        long rejected = 0;
+        List<HitBatchCountDto> batches = new ArrayList<>();
+        StatsUnavailableException failure = null;
+        for (Map.Entry<Integer, CompletableFuture<HitBatchResponseDto>> response : responses.entrySet()) {
+            try {
+                HitBatchResponseDto shardResponse = join(response.getValue());
+                accepted += shardResponse.getAccepted();
+                rejected += shardResponse.getRejected();
+                if (shardResponse.getBatches() != null) {
+                    batches.addAll(shardResponse.getBatches());
+                }
+            } catch (StatsUnavailableException e) {
+                failure = e;
+                int lost = parts.get(response.getKey()).size();
+                rejected += lost;
+                log.warn("Шард {} недоступен, {} хитов не сохранено: {}", nameOf(response.getKey()), lost,
+                        e.getMessage());
+            }
+        }
+        if (failure != null && accepted == 0) {
+            throw failure;
+        }
+        return HitBatchResponseDto.builder()
+                .accepted(accepted)
+                .rejected(rejected)
+                .batches(batches)
+                .build();
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique) {
+        List<String> list = uris == null || uris.isBlank() ? List.of()
+                : Arrays.stream(uris.split(",")).map(String::trim).filter(uri -> !uri.isEmpty()).toList();
+        return getStats(start, end, list, unique);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        return join(gather(start, end, uris, unique, true));
+    }
+
+    @Override
+    public CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                           Collection<String> uris, boolean unique) {
+        return gather(start, end, uris, unique, true);
+    }
+
+    // Отказ любого шарда не скрывается: кэш оставит прежний ответ, а не запомнит неполный
+    @Override
+    public List<StatsDto> fetchStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        return join(gather(start, end, uris, unique, false));
+    }
+
+    // Шаблон (сегмент '*' или '**') может совпасть с uri любого шарда, поэтому уходит во все шарды.
+    // Uri хранится в одном шарде, но хиты всё равно складываются по (app, uri): после изменения состава
+    // шардов старые хиты uri остаются на прежнем владельце
+    private CompletableFuture<List<StatsDto>> gather(LocalDateTime start, LocalDateTime end, Collection<String> uris,
+                                                     boolean unique, boolean lenient) {
+        Map<Integer, List<String>> parts = new HashMap<>();
+        if (uris.isEmpty()) {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                parts.put(shard, List.of());
+            }
+        }
+        for (String uri : uris.stream().distinct().toList()) {
+            if (isPattern(uri)) {
+                for (int shard = 0; shard < shards.size(); shard++) {
+                    parts.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(uri);
+                }
+            } else {
+                parts.computeIfAbsent(ring.shardOf(uri), ignored -> new ArrayList<>()).add(uri);
+            }
+        }
+        List<CompletableFuture<List<StatsDto>>> results = new ArrayList<>();
+        parts.forEach((shard, shardUris) -> {
+            CompletableFuture<List<StatsDto>> result = new HedgedCall<>(readable(shards.get(shard)),
+                    replica -> replica.fetchStats(start, end, shardUris, unique)).start();
+            results.add(lenient ? result.exceptionally(e -> unavailable(shard, e)) : result);
+        });
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> merge(results));
+    }
+
+    private CompletableFuture<String> saveHitToShard(EndpointHitDto requestBody) {
+        return writeAll(shards.get(ring.shardOf(requestBody.getUri())), replica -> replica.sendHit(requestBody));
+    }
+
+    // Запись уходит во все реплики шарда параллельно и удаётся, если её приняла хотя бы одна. Реплика, которая
+    // пропустила принятую другими запись, отстаёт: чтение обходит её до перезапуска сервиса, пока у шарда есть
+    // полные реплики. Ожидание ответов не занимает поток пула, поэтому пакеты разных шардов не ждут друг друга
+    private <T> CompletableFuture<T> writeAll(List<StatClientImpl> replicas, Function<StatClientImpl, T> call) {
+        List<CompletableFuture<T>> writes = replicas.stream()
+                .map(replica -> CompletableFuture.supplyAsync(() -> call.apply(replica), callExecutor))
+                .toList();
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            T written = null;
+            StatsUnavailableException failure = null;
+            List<StatClientImpl> missed = new ArrayList<>();
+            for (int i = 0; i < writes.size(); i++) {
+                try {
+                    T result = writes.get(i).join();
+                    if (written == null) {
+                        written = result;
+                    }
+                } catch (CompletionException e) {
+                    if (!(e.getCause() instanceof StatsUnavailableException unavailable)) {
+                        throw e;
+                    }
+                    failure = unavailable;
+                    missed.add(replicas.get(i));
+                }
+            }
+            if (written == null) {
+                throw new CompletionException(failure);
+            }
+            for (StatClientImpl replica : missed) {
+                if (lagging.add(replica)) {
+                    meterRegistry.counter("stats.client.sharding.missed-writes", "node", replica.getServerUrl())
+                            .increment();
+                    log.warn("Реплика {} пропустила запись и исключена из чтения до перезапуска",
+                            replica.getServerUrl());
+                }
+            }
+            return written;
+        });
+    }
+
+    // Отставшие реплики читаются, только если отстали все реплики шарда
+    private List<StatClientImpl> readable(List<StatClientImpl> replicas) {
+        List<StatClientImpl> complete = replicas.stream().filter(replica -> !lagging.contains(replica)).toList();
+        return complete.isEmpty() ? replicas : complete;
+    }
+
+    private List<StatsDto> unavailable(int shard, Throwable e) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        if (!(cause instanceof StatsUnavailableException)) {
+            throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+        }
+        log.warn("Шард {} недоступен, его просмотры считаются нулевыми: {}", nameOf(shard), cause.getMessage());
+        return List.of();
+    }
+
+    private String notSaved(EndpointHitDto requestBody, StatsUnavailableException e) {
+        log.warn("Хит на {} не сохранён: {}", requestBody.getUri(), e.getMessage());
+        return UNAVAILABLE;
+    }
+
+    private String nameOf(int shard) {
+        return shards.get(shard).get(0).getServerUrl();
+    }
+
+    private static boolean isPattern(String uri) {
+        return Arrays.stream(uri.split("/")).anyMatch(segment -> segment.equals("*") || segment.equals("**"));
+    }
+
+    private static List<StatsDto> merge(List<CompletableFuture<List<StatsDto>>> results) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (CompletableFuture<List<StatsDto>> result : results) {
+            for (StatsDto stats : result.join()) {
+                hits.merge(new AppUri(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+            }
+        }
+        return hits.entrySet().stream()
+                .map(entry -> new StatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private record AppUri(String app, String uri) {
+    }
+
+    // Запрос уходит первой реплике. Следующая получает его, если ответа нет за hedge-delay или предыдущая
+    // отказала. Берётся первый успешный ответ, отказ - когда отказали все реплики
+    private final class HedgedCall<T> {
+        private final List<StatClientImpl> replicas;
+        private final Function<StatClientImpl, T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Executor hedgeTimer = CompletableFuture.delayedExecutor(hedgeDelayNanos,
+                TimeUnit.NANOSECONDS, callExecutor);
+
+        private HedgedCall(List<StatClientImpl> replicas, Function<StatClientImpl, T> call) {
+            this.replicas = replicas;
+            this.call = call;
+        }
+
+        private CompletableFuture<T> start() {
+            startNext();
+            return result;
+        }
+
+        private void startNext() {
+            int index = started.getAndIncrement();
+            if (index >= replicas.size() || result.isDone()) {
+                return;
+            }
+            if (index > 0) {
+                hedges.increment();
+            }
+            StatClientImpl replica = replicas.get(index);
+            CompletableFuture.supplyAsync(() -> call.apply(replica), callExecutor)
+                    .whenComplete((value, e) -> {
+                        if (e == null) {
+                            result.complete(value);
+                            return;
+                        }
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (!(cause instanceof StatsUnavailableException)) {
+                            result.completeExceptionally(cause);
+                        } else if (failed.incrementAndGet() == replicas.size()) {
+                            result.completeExceptionally(cause);
+                        } else {
+                            startNext();
+                        }
+                    });
+            if (index + 1 < replicas.size()) {
+                hedgeTimer.execute(() -> {
+                    if (!result.isDone()) {
+                        startNext();
+                    }
+                });
+            }
+        }
+    }
+}
@@ -1,14 +1,35 @@
 package ru.practicum.ewm.stats.client;
 
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
 import ru.practicum.ewm.stats.dto.StatsDto;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface StatClient {
 
     String saveHit(EndpointHitDto requestBody);
 
+    CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody);
+
+    HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody);
+
     List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique);
+
+    // Список uri уходит в теле запроса, большие наборы делятся на части, которые запрашиваются параллельно
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique);
+
+    // Запрос стартует сразу и выполняется вне вызывающего потока, пока тот занят своей работой, например БД
+    CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end, Collection<String> uris,
+                                                    boolean unique);
+
+    // maxAge - допустимый возраст ответа для клиента с кэшем, остальные реализации всегда запрашивают сервис
+    default List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique,
+                                    Duration maxAge) {
+        return getStats(start, end, uris, unique);
+    }
 }
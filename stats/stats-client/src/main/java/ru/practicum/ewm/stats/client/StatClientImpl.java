@@ -1,46 +1,196 @@
 package ru.practicum.ewm.stats.client;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
 import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.dto.StatsQueryDto;
+import ru.practicum.ewm.stats.dto.wire.StatsWireHttpMessageConverter;
 import ru.practicum.ewm.stats.exceptions.RestClientRuntimeException;
+import ru.practicum.ewm.stats.exceptions.StatsUnavailableException;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+// Транспорт: один JDK HttpClient (HTTP/2 с мультиплексированием или пул соединений HTTP/1.1) и свой
+// таймаут чтения на каждую операцию. Вызовы ограничены семафором (client.bulkhead.*) и размыкателем цепи
+// (client.breaker.*). Если сервис недоступен, чтение статистики возвращает пустой список (просмотры 0),
+// а одиночный хит теряется с предупреждением в логе, чтобы сбой статистики не ломал чтение событий
 @Service
-public class StatClientImpl implements StatClient {
+@Slf4j
+public class StatClientImpl implements StatTransport {
+    private static final String UNAVAILABLE = "Сервис статистики недоступен, хит не сохранён";
 
-    private final RestClient restClient;
+    private final String serverUrl;
+    private final Settings settings;
+    private final RestClient hitClient;
+    private final RestClient batchClient;
+    private final RestClient statsClient;
+    private final MediaType mediaType;
+    private final ExecutorService queryExecutor;
+    private final ExecutorService callExecutor;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
-    public StatClientImpl(@Value("${client.url}") String serverUrl) {
-        this.restClient = RestClient.builder().baseUrl(serverUrl).build();
+    public StatClientImpl(@Value("${client.url}") String serverUrl,
+                          @Value("${client.format:json}") String format,
+                          @Value("${client.compression:true}") boolean compression,
+                          @Value("${client.http.version:HTTP_2}") HttpClient.Version httpVersion,
+                          @Value("${client.connect-timeout:${client.timeout:PT5S}}") Duration connectTimeout,
+                          @Value("${client.read-timeout.hit:${client.timeout:PT5S}}") Duration hitTimeout,
+                          @Value("${client.read-timeout.batch:${client.timeout:PT5S}}") Duration batchTimeout,
+                          @Value("${client.read-timeout.stats:${client.timeout:PT5S}}") Duration statsTimeout,
+                          @Value("${client.bulkhead.max-concurrent-calls:64}") int maxConcurrentCalls,
+                          @Value("${client.bulkhead.max-wait:PT0S}") Duration bulkheadWait,
+                          @Value("${client.breaker.failure-threshold:5}") int failureThreshold,
+                          @Value("${client.breaker.open-duration:PT30S}") Duration openDuration,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                          @Value("${client.query.chunk-size:1000}") int chunkSize,
+                          @Value("${client.query.parallelism:4}") int parallelism,
+                          @Value("${client.async-calls.threads:16}") int callThreads,
+                          MeterRegistry meterRegistry) {
+        this(serverUrl, new Settings(format, compression, httpVersion, connectTimeout, hitTimeout, batchTimeout,
+                statsTimeout, maxConcurrentCalls, bulkheadWait, failureThreshold, openDuration, virtualThreads,
+                chunkSize, parallelism, callThreads), meterRegistry);
+    }
+
+    private StatClientImpl(String serverUrl, Settings settings, MeterRegistry meterRegistry) {
+        this.serverUrl = serverUrl;
+        this.settings = settings;
+        // По http JDK HttpClient переходит на HTTP/2 заголовком Upgrade в запросе с телом, а Tomcat 10.1 тело
+        // такого запроса портит (413 или обрезанный JSON), поэтому HTTP/2 включается только для https
+        HttpClient.Builder httpClient = HttpClient.newBuilder()
+                .version(serverUrl.startsWith("https:") ? settings.httpVersion() : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.connectTimeout());
+        if (settings.virtualThreads()) {
+            // Блокирующий send JDK HttpClient паркует виртуальный поток, не занимая несущий
+            httpClient.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        HttpClient transport = httpClient.build();
+        RestClient.Builder builder = RestClient.builder()
+                .baseUrl(serverUrl)
+                .messageConverters(converters -> converters.add(0, new StatsWireHttpMessageConverter()));
+        if (settings.compression()) {
+            builder.requestInterceptor(new GzipResponseInterceptor());
+        }
+        RestClient restClient = builder.build();
+        this.hitClient = withTimeout(restClient, transport, settings.hitTimeout());
+        this.batchClient = withTimeout(restClient, transport, settings.batchTimeout());
+        this.statsClient = withTimeout(restClient, transport, settings.statsTimeout());
+        this.mediaType = "binary".equalsIgnoreCase(settings.format()) ? StatsWireHttpMessageConverter.MEDIA_TYPE
+                : MediaType.APPLICATION_JSON;
+        this.queryExecutor = settings.virtualThreads() ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(settings.parallelism(), Thread.ofPlatform().daemon()
+                .name("stats-query-", 0).factory());
+        // отдельно от queryExecutor: асинхронный вызов сам ждёт части запроса, общий пул мог бы исчерпаться
+        this.callExecutor = settings.virtualThreads() ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(settings.callThreads(), Thread.ofPlatform().daemon()
+                .name("stats-call-", 0).factory());
+        this.bulkhead = new Semaphore(settings.maxConcurrentCalls());
+        this.breaker = new CircuitBreaker(settings.failureThreshold(), settings.openDuration());
+        this.meterRegistry = meterRegistry;
+        int maxConcurrentCalls = settings.maxConcurrentCalls();
+        Gauge.builder("stats.client.calls.active", bulkhead, calls -> maxConcurrentCalls - calls.availablePermits())
+                .tag("node", serverUrl)
+                .register(meterRegistry);
+        Gauge.builder("stats.client.calls.limit", () -> maxConcurrentCalls)
+                .tag("node", serverUrl)
+                .register(meterRegistry);
+        Gauge.builder("stats.client.breaker.state", breaker, state -> state.getState().ordinal())
+                .description("0 - замкнута, 1 - пробный вызов, 2 - разомкнута")
+                .tag("node", serverUrl)
+                .register(meterRegistry);
+    }
+
+    // Клиент другого узла с теми же настройками, но своими семафором, размыкателем и пулами; для своего адреса - он сам
+    StatClientImpl forNode(String nodeUrl) {
+        return nodeUrl.equals(serverUrl) ? this : new StatClientImpl(nodeUrl, settings, meterRegistry);
+    }
+
+    String getServerUrl() {
+        return serverUrl;
+    }
+
+    @PreDestroy
+    public void close() {
+        queryExecutor.shutdownNow();
+        callExecutor.shutdownNow();
     }
 
     public String saveHit(EndpointHitDto requestBody) {
-        return restClient.post()
+        try {
+            return sendHit(requestBody);
+        } catch (StatsUnavailableException e) {
+            log.warn("Хит на {} не сохранён: {}", requestBody.getUri(), e.getMessage());
+            return UNAVAILABLE;
+        }
+    }
+
+    // Недоступность сервиса не скрывается, в отличие от saveHit
+    String sendHit(EndpointHitDto requestBody) {
+        return call("hit", () -> hitClient.post()
                 .uri("/hit")
-                .contentType(MediaType.APPLICATION_JSON)
+                .contentType(mediaType)
                 .body(requestBody)
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
                     throw new RestClientRuntimeException(response.getStatusCode(), response.getBody().toString());
                 })
                 .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
-                    throw new RestClientRuntimeException(response.getStatusCode(), response.getBody().toString());
+                    throw new StatsUnavailableException("Сервис статистики ответил " + response.getStatusCode());
                 })
-                .body(String.class);
+                .body(String.class));
+    }
+
+    public CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody) {
+        return CompletableFuture.supplyAsync(() -> saveHit(requestBody), callExecutor);
+    }
 
+    // Отказ не скрывается: асинхронный клиент учитывает потерянный пакет сам
+    public HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody) {
+        return call("batch", () -> batchClient.post()
+                .uri("/hit/batch")
+                .contentType(mediaType)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(requestBody, new ParameterizedTypeReference<List<EndpointHitDto>>() {
+                })
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
+                    throw new RestClientRuntimeException(response.getStatusCode(), response.getBody().toString());
+                })
+                .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
+                    throw new StatsUnavailableException("Сервис статистики ответил " + response.getStatusCode());
+                })
+                .body(HitBatchResponseDto.class));
     }
 
     public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique) {
@@ -52,16 +202,157 @@ public class StatClientImpl implements StatClient {
                 .fromUriString("/stats?start={start}&end={end}&uris={uris}&unique={unique}")
                 .build().expand(requestParams);
 
-        return restClient.get()
-                .uri(uriComponents.toUriString())
+        try {
+            return call("stats", () -> statsClient.get()
+                    .uri(uriComponents.toUriString())
+                    .accept(mediaType, MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
+                        throw new RestClientRuntimeException(response.getStatusCode(),
+                                response.getBody().toString());
+                    })
+                    .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
+                        throw new StatsUnavailableException("Сервис статистики ответил " + response.getStatusCode());
+                    })
+                    .body(new ParameterizedTypeReference<>() {
+                    }));
+        } catch (StatsUnavailableException e) {
+            return unavailable(e);
+        }
+    }
+
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        try {
+            return fetchStats(start, end, uris, unique);
+        } catch (StatsUnavailableException e) {
+            return unavailable(e);
+        }
+    }
+
+    public CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                           Collection<String> uris, boolean unique) {
+        return CompletableFuture.supplyAsync(() -> getStats(start, end, uris, unique), callExecutor);
+    }
+
+    // Первая часть запрашивается в вызывающем потоке, остальные параллельно. Части не пересекаются по uri,
+    // поэтому результаты просто объединяются. Недоступность сервиса не скрывается, в отличие от getStats
+    @Override
+    public List<StatsDto> fetchStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        List<String> distinct = uris.stream().distinct().toList();
+        int chunkSize = settings.chunkSize();
+        if (distinct.size() <= chunkSize) {
+            return queryStats(start, end, distinct, unique);
+        }
+        List<CompletableFuture<List<StatsDto>>> parts = new ArrayList<>();
+        for (int from = chunkSize; from < distinct.size(); from += chunkSize) {
+            List<String> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            parts.add(CompletableFuture.supplyAsync(() -> queryStats(start, end, chunk, unique), queryExecutor));
+        }
+        List<StatsDto> result = new ArrayList<>(queryStats(start, end, distinct.subList(0, chunkSize), unique));
+        try {
+            for (CompletableFuture<List<StatsDto>> part : parts) {
+                result.addAll(part.join());
+            }
+        } catch (CompletionException e) {
+            parts.forEach(part -> part.cancel(false));
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        result.sort(Comparator.comparing(StatsDto::getHits).reversed());
+        return result;
+    }
+
+    private List<StatsDto> queryStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return call("stats", () -> statsClient.post()
+                .uri("/stats/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(mediaType, MediaType.APPLICATION_JSON)
+                .body(StatsQueryDto.builder()
+                        .start(start)
+                        .end(end)
+                        .uris(uris)
+                        .unique(unique)
+                        .build())
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
                     throw new RestClientRuntimeException(response.getStatusCode(), response.getBody().toString());
                 })
                 .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
-                    throw new RestClientRuntimeException(response.getStatusCode(), response.getBody().toString());
+                    throw new StatsUnavailableException("Сервис статистики ответил " + response.getStatusCode());
                 })
                 .body(new ParameterizedTypeReference<>() {
-                });
+                }));
+    }
+
+    // Ответ 4xx означает, что сервис жив, и цепь не размыкает
+    private <T> T call(String operation, Supplier<T> request) {
+        if (!acquire()) {
+            rejected(operation, "bulkhead");
+            throw new StatsUnavailableException("Превышен предел одновременных вызовов сервиса статистики");
+        }
+        try {
+            if (!breaker.tryAcquire()) {
+                rejected(operation, "breaker");
+                throw new StatsUnavailableException("Цепь вызовов сервиса статистики разомкнута");
+            }
+            long started = System.nanoTime();
+            String outcome = "failure";
+            try {
+                T result = request.get();
+                breaker.onSuccess();
+                outcome = "success";
+                return result;
+            } catch (RestClientRuntimeException e) {
+                breaker.onSuccess();
+                outcome = "client_error";
+                throw e;
+            } catch (StatsUnavailableException e) {
+                breaker.onFailure();
+                throw e;
+            } catch (RuntimeException e) {
+                breaker.onFailure();
+                throw new StatsUnavailableException("Ошибка вызова сервиса статистики: " + e.getMessage(), e);
+            } finally {
+                Timer.builder("stats.client.requests")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .tag("node", serverUrl)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return bulkhead.tryAcquire(settings.bulkheadWait().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void rejected(String operation, String reason) {
+        meterRegistry.counter("stats.client.calls.rejected", "operation", operation, "reason", reason,
+                "node", serverUrl).increment();
+    }
+
+    private List<StatsDto> unavailable(StatsUnavailableException e) {
+        log.warn("Статистика просмотров недоступна, просмотры считаются нулевыми: {}", e.getMessage());
+        return List.of();
+    }
+
+    private static RestClient withTimeout(RestClient restClient, HttpClient transport, Duration readTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(transport);
+        requestFactory.setReadTimeout(readTimeout);
+        return restClient.mutate().requestFactory(requestFactory).build();
+    }
+
+    private record Settings(String format, boolean compression, HttpClient.Version httpVersion,
+                            Duration connectTimeout, Duration hitTimeout, Duration batchTimeout,
+                            Duration statsTimeout, int maxConcurrentCalls, Duration bulkheadWait,
+                            int failureThreshold, Duration openDuration, boolean virtualThreads, int chunkSize,
+                            int parallelism, int callThreads) {
     }
 }
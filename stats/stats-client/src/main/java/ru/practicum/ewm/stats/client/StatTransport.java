@@ -0,0 +1,15 @@
+package ru.practicum.ewm.stats.client;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Клиент, который сам ходит в сервис статистики: один узел или шарды. Над ним работают кэш и асинхронная
+// запись. Из нескольких реализаций внедряется та, у которой меньше @Priority
+interface StatTransport extends StatClient {
+
+    // В отличие от getStats, недоступность сервиса не скрывается, а бросается StatsUnavailableException
+    List<StatsDto> fetchStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique);
+}
@@ -0,0 +1,13 @@
+package ru.practicum.ewm.stats.exceptions;
+
+// Сервис статистики не ответил: таймаут, ошибка соединения или 5xx, цепь разомкнута либо занят лимит вызовов
+public class StatsUnavailableException extends RuntimeException {
+
+    public StatsUnavailableException(String message) {
+        super(message);
+    }
+
+    public StatsUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.practicum.ewm.stats.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.StatsApp;
+import ru.practicum.ewm.stats.server.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Два шарда по две реплики: четыре экземпляра stats-server в одном процессе, у каждого своя H2 в памяти
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ShardedStatClientTest {
+    private static final int SHARDS = 2;
+    private static final int REPLICAS = 2;
+
+    private static final List<List<ConfigurableApplicationContext>> servers = new ArrayList<>();
+    private static ConfigurableApplicationContext client;
+    private static StatClient statClient;
+
+    private final LocalDateTime start = LocalDateTime.now().minusHours(1);
+    private final LocalDateTime end = LocalDateTime.now().plusMinutes(1);
+
+    @BeforeAll
+    static void startCluster() {
+        List<String> nodes = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<ConfigurableApplicationContext> replicas = new ArrayList<>();
+            for (int replica = 0; replica < REPLICAS; replica++) {
+                replicas.add(startServer("shard" + shard + "replica" + replica));
+            }
+            servers.add(replicas);
+            nodes.add(replicas.stream().map(ShardedStatClientTest::urlOf).collect(Collectors.joining("|")));
+        }
+        client = new SpringApplicationBuilder(ClientConfig.class)
+                .web(WebApplicationType.NONE)
+                .run("--client.url=" + urlOf(servers.get(0).get(0)),
+                        "--client.sharding.enabled=true",
+                        "--client.sharding.nodes=" + String.join(",", nodes));
+        statClient = client.getBean(StatClient.class);
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        client.close();
+        servers.forEach(replicas -> replicas.forEach(ConfigurableApplicationContext::close));
+    }
+
+    @Test
+    @Order(1)
+    void shardedClientIsInjected() {
+        assertThat(statClient).isInstanceOf(ShardedStatClient.class);
+    }
+
+    @Test
+    @Order(2)
+    void hitsOfUriAreStoredInOneShardOnEveryReplica() {
+        Map<String, Long> expected = saveHits("routing", "/routing/", 100);
+
+        Map<String, Integer> owners = new HashMap<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Map<String, Long> primary = stored(shard, 0, "routing");
+            for (int replica = 1; replica < REPLICAS; replica++) {
+                assertThat(stored(shard, replica, "routing")).isEqualTo(primary);
+            }
+            for (String uri : primary.keySet()) {
+                assertThat(owners.put(uri, shard)).as("uri %s в двух шардах", uri).isNull();
+            }
+        }
+        assertThat(owners.keySet()).isEqualTo(expected.keySet());
+        assertThat(new HashSet<>(owners.values())).hasSize(SHARDS);
+    }
+
+    @Test
+    @Order(3)
+    void uriAndUriLessQueriesSumShards() {
+        Map<String, Long> expected = saveHits("totals", "/totals/", 60);
+
+        assertThat(hitsOf(statClient.getStats(start, end, expected.keySet(), false), "totals"))
+                .isEqualTo(expected);
+        assertThat(hitsOf(statClient.getStats(start, end, List.of(), false), "totals")).isEqualTo(expected);
+    }
+
+    @Test
+    @Order(4)
+    void patternQueryReachesEveryShard() {
+        Map<String, Long> expected = saveHits("pattern", "/pattern/", 40);
+
+        assertThat(hitsOf(statClient.getStats(start, end, List.of("/pattern/*"), false), "pattern"))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    @Order(5)
+    void readsAndWritesSurviveStoppedReplica() {
+        Map<String, Long> expected = saveHits("failover", "/failover/", 40);
+        servers.get(0).get(0).close();
+
+        assertThat(hitsOf(statClient.getStats(start, end, expected.keySet(), false), "failover"))
+                .isEqualTo(expected);
+
+        statClient.saveHit(new EndpointHitDto("failover", "/failover/0", "10.0.1.1",
+                LocalDateTime.now().minusMinutes(1)));
+        expected.merge("/failover/0", 1L, Long::sum);
+        assertThat(hitsOf(statClient.getStats(start, end, expected.keySet(), false), "failover"))
+                .isEqualTo(expected);
+    }
+
+    // У uri с номером i ровно i % 5 + 1 хит с разных ip
+    private Map<String, Long> saveHits(String app, String prefix, int uriCount) {
+        Map<String, Long> expected = new HashMap<>();
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < uriCount; i++) {
+            for (int hit = 0; hit <= i % 5; hit++) {
+                hits.add(new EndpointHitDto(app, prefix + i, "10.0.0." + hit, LocalDateTime.now().minusMinutes(1)));
+            }
+            expected.put(prefix + i, (long) (i % 5 + 1));
+        }
+        HitBatchResponseDto response = statClient.saveHits(hits);
+        assertThat(response.getAccepted()).isEqualTo(hits.size());
+        return expected;
+    }
+
+    private Map<String, Long> stored(int shard, int replica, String app) {
+        return hitsOf(servers.get(shard).get(replica).getBean(StatsService.class)
+                .getStats(start, end, List.of(), false, false), app);
+    }
+
+    private static Map<String, Long> hitsOf(List<StatsDto> stats, String app) {
+        Set<String> seen = new HashSet<>();
+        return stats.stream()
+                .filter(row -> row.getApp().equals(app))
+                .peek(row -> assertThat(seen.add(row.getUri())).as("повтор %s", row.getUri()).isTrue())
+                .collect(Collectors.toMap(StatsDto::getUri, StatsDto::getHits));
+    }
+
+    private static ConfigurableApplicationContext startServer(String name) {
+        return new SpringApplicationBuilder(StatsApp.class)
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                        "--spring.main.banner-mode=off",
+                        "--spring.jmx.enabled=false");
+    }
+
+    private static String urlOf(ConfigurableApplicationContext server) {
+        return "http://localhost:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @Configuration
+    @ComponentScan("ru.practicum.ewm.stats.client")
+    static class ClientConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
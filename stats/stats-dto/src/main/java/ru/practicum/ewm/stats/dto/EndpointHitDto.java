@@ -4,6 +4,7 @@ package ru.practicum.ewm.stats.dto;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
 @Builder
 public class EndpointHitDto {
     @NotBlank
+    @Size(max = 100)
     String app;
     @NotBlank
     String uri;
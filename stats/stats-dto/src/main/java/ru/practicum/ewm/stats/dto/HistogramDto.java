@@ -0,0 +1,17 @@
+package ru.practicum.ewm.stats.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class HistogramDto {
+    String app;
+    String uri;
+    List<HistogramBucketDto> buckets;
+}
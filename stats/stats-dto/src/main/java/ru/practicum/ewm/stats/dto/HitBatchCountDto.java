@@ -0,0 +1,15 @@
+package ru.practicum.ewm.stats.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitBatchCountDto {
+    int batch;
+    int accepted;
+    int rejected;
+}
@@ -0,0 +1,18 @@
+package ru.practicum.ewm.stats.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitBatchResponseDto {
+    long accepted;
+    long rejected;
+    List<HitBatchCountDto> batches;
+    String error;
+}
@@ -0,0 +1,28 @@
+package ru.practicum.ewm.stats.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Тело POST /stats/query: те же параметры, что у GET /stats, но список uri не ограничен длиной url
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatsQueryDto {
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @NotNull
+    LocalDateTime start;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @NotNull
+    LocalDateTime end;
+    List<String> uris;
+    boolean unique;
+    Boolean approximate;
+    boolean aggregate;
+}
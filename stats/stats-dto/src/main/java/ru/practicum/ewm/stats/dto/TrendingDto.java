@@ -0,0 +1,14 @@
+package ru.practicum.ewm.stats.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class TrendingDto {
+    String app;
+    String uri;
+    double score;
+}
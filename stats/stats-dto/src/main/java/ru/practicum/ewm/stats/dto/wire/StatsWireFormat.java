@@ -0,0 +1,105 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Двоичный формат обмена клиента и сервера статистики: версия, затем записи подряд до конца потока.
+// Числа — varint, время хита — секунды эпохи UTC. Строки app и uri передаются один раз, повторные — ссылкой
+// на номер в таблице потока, поэтому список StatsDto не повторяет app в каждой строке
+final class StatsWireFormat {
+    static final int VERSION = 1;
+    static final int MAX_TABLE_SIZE = 4096;
+
+    private StatsWireFormat() {
+    }
+
+    static final class StringTableWriter {
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        void write(OutputStream out, String value) throws IOException {
+            Integer index = indexes.get(value);
+            if (index != null) {
+                writeVarLong(out, index + 1);
+                return;
+            }
+            writeVarLong(out, 0);
+            writeLiteral(out, value);
+            if (indexes.size() < MAX_TABLE_SIZE) {
+                indexes.put(value, indexes.size());
+            }
+        }
+    }
+
+    static final class StringTableReader {
+        private final String[] values = new String[MAX_TABLE_SIZE];
+        private int size;
+
+        String read(InputStream in) throws IOException {
+            long reference = readVarLong(in);
+            if (reference == 0) {
+                String value = readLiteral(in);
+                if (size < MAX_TABLE_SIZE) {
+                    values[size++] = value;
+                }
+                return value;
+            }
+            if (reference > size) {
+                throw new IOException("Ссылка на неизвестную строку: " + reference);
+            }
+            return values[(int) reference - 1];
+        }
+    }
+
+    static void writeLiteral(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readLiteral(InputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Слишком длинная строка: " + length);
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length != length) {
+            throw new IOException("Неожиданный конец потока");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Неожиданный конец потока");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Некорректное число varint");
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Читает и пишет в StatsWire EndpointHitDto, StatsDto и их списки
+public class StatsWireHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(StatsWireWriter.MEDIA_TYPE);
+
+    public StatsWireHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHitDto.class.isAssignableFrom(clazz) || StatsDto.class.isAssignableFrom(clazz)
+                || Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return elementOf(type) != null && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        Type target = type != null ? type : clazz;
+        return elementOf(target) != null && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        Class<?> element = elementOf(type);
+        StatsWireReader reader = new StatsWireReader(inputMessage.getBody());
+        if (!Collection.class.isAssignableFrom(ResolvableType.forType(type).toClass())) {
+            if (!reader.hasNext()) {
+                throw new HttpMessageNotReadableException("Пустое тело запроса", inputMessage);
+            }
+            return readOne(reader, element);
+        }
+        List<Object> result = new ArrayList<>();
+        while (reader.hasNext()) {
+            result.add(readOne(reader, element));
+        }
+        return result;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        StatsWireWriter writer = new StatsWireWriter(outputMessage.getBody());
+        for (Object element : value instanceof Collection<?> collection ? collection : List.of(value)) {
+            if (element instanceof EndpointHitDto hit) {
+                writer.writeHit(hit);
+            } else if (element instanceof StatsDto stats) {
+                writer.writeStats(stats);
+            } else {
+                throw new HttpMessageNotWritableException("Тип не поддерживается форматом: " + element.getClass());
+            }
+        }
+        writer.flush();
+    }
+
+    private static Object readOne(StatsWireReader reader, Class<?> element) throws IOException {
+        return element == EndpointHitDto.class ? reader.readHit() : reader.readStats();
+    }
+
+    private static Class<?> elementOf(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        Class<?> clazz = Collection.class.isAssignableFrom(resolved.toClass())
+                ? resolved.asCollection().getGeneric(0).resolve()
+                : resolved.resolve();
+        return clazz == EndpointHitDto.class || clazz == StatsDto.class ? clazz : null;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class StatsWireReader {
+    private final PushbackInputStream in;
+    private final StatsWireFormat.StringTableReader strings = new StatsWireFormat.StringTableReader();
+
+    public StatsWireReader(InputStream in) throws IOException {
+        this.in = new PushbackInputStream(new BufferedInputStream(in));
+        int version = this.in.read();
+        if (version >= 0 && version != StatsWireFormat.VERSION) {
+            throw new IOException("Неподдерживаемая версия формата: " + version);
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            return false;
+        }
+        in.unread(next);
+        return true;
+    }
+
+    public EndpointHitDto readHit() throws IOException {
+        return EndpointHitDto.builder()
+                .app(strings.read(in))
+                .uri(strings.read(in))
+                .ip(StatsWireFormat.readLiteral(in))
+                .timestamp(LocalDateTime.ofEpochSecond(StatsWireFormat.unZigZag(StatsWireFormat.readVarLong(in)), 0,
+                        ZoneOffset.UTC))
+                .build();
+    }
+
+    public StatsDto readStats() throws IOException {
+        return new StatsDto(strings.read(in), strings.read(in), StatsWireFormat.readVarLong(in));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZoneOffset;
+
+// Пишет через буфер, после последней записи нужен flush
+public class StatsWireWriter {
+    public static final String MEDIA_TYPE = "application/x-ewm-stats";
+
+    private final OutputStream out;
+    private final StatsWireFormat.StringTableWriter strings = new StatsWireFormat.StringTableWriter();
+
+    public StatsWireWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out);
+        this.out.write(StatsWireFormat.VERSION);
+    }
+
+    public void writeHit(EndpointHitDto hit) throws IOException {
+        strings.write(out, hit.getApp());
+        strings.write(out, hit.getUri());
+        StatsWireFormat.writeLiteral(out, hit.getIp());
+        StatsWireFormat.writeVarLong(out, StatsWireFormat.zigZag(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC)));
+    }
+
+    public void writeStats(StatsDto stats) throws IOException {
+        strings.write(out, stats.getApp());
+        strings.write(out, stats.getUri());
+        StatsWireFormat.writeVarLong(out, stats.getHits());
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsWireFormatTest {
+
+    @Test
+    void varLongRoundTripsAndUsesMinimalLength() throws IOException {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        int[] lengths = {1, 1, 1, 2, 2, 3, 5, 9, 10, 10};
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StatsWireFormat.writeVarLong(out, values[i]);
+            assertThat(out.size()).as("%d", values[i]).isEqualTo(lengths[i]);
+            assertThat(StatsWireFormat.readVarLong(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void zigZagKeepsSmallNegativesShort() {
+        assertThat(StatsWireFormat.zigZag(0)).isZero();
+        assertThat(StatsWireFormat.zigZag(-1)).isEqualTo(1);
+        assertThat(StatsWireFormat.zigZag(1)).isEqualTo(2);
+        for (long value : new long[]{-86_400, 1_790_000_000L, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            assertThat(StatsWireFormat.unZigZag(StatsWireFormat.zigZag(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedAndOverlongVarLong() {
+        assertThatThrownBy(() -> StatsWireFormat.readVarLong(new ByteArrayInputStream(new byte[]{(byte) 0x80})))
+                .isInstanceOf(IOException.class);
+        byte[] overlong = new byte[11];
+        Arrays.fill(overlong, (byte) 0x80);
+        assertThatThrownBy(() -> StatsWireFormat.readVarLong(new ByteArrayInputStream(overlong)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsTruncatedLiteral() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireFormat.writeLiteral(out, "/events/1");
+        byte[] bytes = out.toByteArray();
+
+        assertThatThrownBy(() -> StatsWireFormat.readLiteral(new ByteArrayInputStream(bytes, 0, bytes.length - 1)))
+                .isInstanceOf(IOException.class);
+    }
+
+    // Повтор строки занимает один байт ссылки, после заполнения таблицы строки идут литералами
+    @Test
+    void stringTableSendsRepeatsByReference() throws IOException {
+        StatsWireFormat.StringTableWriter writer = new StatsWireFormat.StringTableWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out, "ewm-main-service");
+        int literal = out.size();
+        writer.write(out, "ewm-main-service");
+        assertThat(out.size() - literal).isEqualTo(1);
+
+        for (int i = 0; i < StatsWireFormat.MAX_TABLE_SIZE + 10; i++) {
+            writer.write(out, "/events/" + i);
+        }
+        writer.write(out, "/events/" + (StatsWireFormat.MAX_TABLE_SIZE + 5));
+        writer.write(out, "/events/7");
+
+        StatsWireFormat.StringTableReader reader = new StatsWireFormat.StringTableReader();
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertThat(reader.read(in)).isEqualTo("ewm-main-service");
+        assertThat(reader.read(in)).isEqualTo("ewm-main-service");
+        for (int i = 0; i < StatsWireFormat.MAX_TABLE_SIZE + 10; i++) {
+            assertThat(reader.read(in)).isEqualTo("/events/" + i);
+        }
+        assertThat(reader.read(in)).isEqualTo("/events/" + (StatsWireFormat.MAX_TABLE_SIZE + 5));
+        assertThat(reader.read(in)).isEqualTo("/events/7");
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void rejectsReferenceToUnknownString() {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[]{1});
+
+        assertThatThrownBy(() -> new StatsWireFormat.StringTableReader().read(in)).isInstanceOf(IOException.class);
+    }
+}
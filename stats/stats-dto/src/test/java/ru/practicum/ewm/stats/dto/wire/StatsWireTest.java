@@ -0,0 +1,149 @@
+package ru.practicum.ewm.stats.dto.wire;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsWireTest {
+    private static final Type HITS = new ParameterizedTypeReference<List<EndpointHitDto>>() {
+    }.getType();
+    private static final Type STATS = new ParameterizedTypeReference<List<StatsDto>>() {
+    }.getType();
+
+    @Test
+    void hitsRoundTrip() throws IOException {
+        List<EndpointHitDto> hits = List.of(
+                hit("ewm-main-service", "/events/1", "192.168.0.1", LocalDateTime.of(2026, 3, 1, 12, 30, 15)),
+                hit("ewm-main-service", "/events/1", "2001:db8::1", LocalDateTime.of(1969, 12, 31, 23, 59, 59)),
+                hit("ewm-main-service", "/события/2", "unknown", LocalDateTime.of(2100, 1, 1, 0, 0)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireWriter writer = new StatsWireWriter(out);
+        for (EndpointHitDto hit : hits) {
+            writer.writeHit(hit);
+        }
+        writer.flush();
+
+        StatsWireReader reader = new StatsWireReader(new ByteArrayInputStream(out.toByteArray()));
+        List<EndpointHitDto> read = new ArrayList<>();
+        while (reader.hasNext()) {
+            read.add(reader.readHit());
+        }
+        assertThat(read).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(hits);
+    }
+
+    // app повторяется в каждой строке ответа, но передаётся один раз
+    @Test
+    void statsRoundTripAndAppIsSentOnce() throws IOException {
+        List<StatsDto> stats = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            stats.add(new StatsDto("ewm-main-service", "/events/" + i, (long) i * i));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireWriter writer = new StatsWireWriter(out);
+        stats.forEach(dto -> write(writer, dto));
+        writer.flush();
+        byte[] bytes = out.toByteArray();
+
+        assertThat(countOccurrences(bytes, "ewm-main-service".getBytes())).isEqualTo(1);
+        StatsWireReader reader = new StatsWireReader(new ByteArrayInputStream(bytes));
+        List<StatsDto> read = new ArrayList<>();
+        while (reader.hasNext()) {
+            read.add(reader.readStats());
+        }
+        assertThat(read).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(stats);
+    }
+
+    @Test
+    void emptyStreamHasNoRecords() throws IOException {
+        assertThat(new StatsWireReader(new ByteArrayInputStream(new byte[0])).hasNext()).isFalse();
+        assertThat(new StatsWireReader(new ByteArrayInputStream(new byte[]{StatsWireFormat.VERSION})).hasNext())
+                .isFalse();
+    }
+
+    @Test
+    void rejectsUnknownVersionAndTruncatedRecord() throws IOException {
+        assertThatThrownBy(() -> new StatsWireReader(new ByteArrayInputStream(new byte[]{2})))
+                .isInstanceOf(IOException.class);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsWireWriter writer = new StatsWireWriter(out);
+        writer.writeStats(new StatsDto("app", "/events/1", 300L));
+        writer.flush();
+        byte[] bytes = out.toByteArray();
+        StatsWireReader reader = new StatsWireReader(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+        assertThatThrownBy(reader::readStats).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void converterReadsAndWritesLists() throws IOException {
+        StatsWireHttpMessageConverter converter = new StatsWireHttpMessageConverter();
+        List<StatsDto> stats = List.of(new StatsDto("app", "/events/1", 5L), new StatsDto("app", "/events/2", 3L));
+
+        assertThat(converter.canWrite(STATS, List.class, StatsWireHttpMessageConverter.MEDIA_TYPE)).isTrue();
+        assertThat(converter.canRead(HITS, null, StatsWireHttpMessageConverter.MEDIA_TYPE)).isTrue();
+        assertThat(converter.canRead(new ParameterizedTypeReference<List<String>>() {
+        }.getType(), null, StatsWireHttpMessageConverter.MEDIA_TYPE)).isFalse();
+        assertThat(converter.canRead(Map.class, null, StatsWireHttpMessageConverter.MEDIA_TYPE)).isFalse();
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(stats, STATS, StatsWireHttpMessageConverter.MEDIA_TYPE, output);
+        Object read = converter.read(STATS, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertThat(read).asList().usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(stats);
+    }
+
+    @Test
+    void converterReadsSingleHitAndRejectsEmptyBody() throws IOException {
+        StatsWireHttpMessageConverter converter = new StatsWireHttpMessageConverter();
+        EndpointHitDto hit = hit("app", "/events/1", "10.0.0.1", LocalDateTime.of(2026, 3, 1, 0, 0));
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(hit, EndpointHitDto.class, StatsWireHttpMessageConverter.MEDIA_TYPE, output);
+
+        assertThat(converter.read(EndpointHitDto.class, null, new MockHttpInputMessage(output.getBodyAsBytes())))
+                .usingRecursiveComparison().isEqualTo(hit);
+        assertThatThrownBy(() -> converter.read(EndpointHitDto.class, null, new MockHttpInputMessage(new byte[0])))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    private static EndpointHitDto hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder().app(app).uri(uri).ip(ip).timestamp(timestamp).build();
+    }
+
+    private static void write(StatsWireWriter writer, StatsDto dto) {
+        try {
+            writer.writeStats(dto);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int countOccurrences(byte[] bytes, byte[] pattern) {
+        int count = 0;
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.ewm.stats.embedded;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.client.StatClient;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.StatsApp;
+import ru.practicum.ewm.stats.server.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Встроенный режим (client.mode=embedded): сервер статистики поднимается в том же процессе отдельным
+// контекстом без веб-сервера, со своими настройками (client.embedded.config) и своим хранилищем, а вызовы
+// идут в StatsService напрямую, без HTTP и JSON. Переменные окружения основного сервиса во встроенный
+// контекст не попадают, чтобы SPRING_DATASOURCE_URL и подобные не подменили его базу
+@Service
+@Priority(0)
+@ConditionalOnProperty(name = "client.mode", havingValue = "embedded")
+@Slf4j
+public class EmbeddedStatClient implements StatClient {
+    private static final String SAVED = "Информация сохранена";
+    private static final String UNAVAILABLE = "Сервис статистики недоступен, хит не сохранён";
+
+    private final ConfigurableApplicationContext context;
+    private final StatsService statsService;
+    private final boolean approximate;
+    private final ExecutorService callExecutor;
+
+    public EmbeddedStatClient(@Value("${client.embedded.config:classpath:stats-embedded.properties}") String config,
+                              @Value("${client.async-calls.threads:16}") int callThreads,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME);
+        this.context = new SpringApplicationBuilder(StatsApp.class)
+                .web(WebApplicationType.NONE)
+                .environment(environment)
+                .properties("spring.config.location=" + config)
+                .registerShutdownHook(false)
+                .run();
+        this.statsService = context.getBean(StatsService.class);
+        this.approximate = context.getEnvironment()
+                .getProperty("stats.sketch.approximate-by-default", Boolean.class, false);
+        this.callExecutor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(callThreads, Thread.ofPlatform().daemon().name("stats-call-", 0)
+                .factory());
+        log.info("Сервис статистики запущен во встроенном режиме с настройками {}", config);
+    }
+
+    @PreDestroy
+    public void close() {
+        callExecutor.shutdownNow();
+        context.close();
+    }
+
+    @Override
+    public String saveHit(EndpointHitDto requestBody) {
+        try {
+            statsService.saveHit(requestBody);
+            return SAVED;
+        } catch (DataAccessException e) {
+            log.warn("Хит на {} не сохранён: {}", requestBody.getUri(), e.getMessage());
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> saveHitAsync(EndpointHitDto requestBody) {
+        return CompletableFuture.supplyAsync(() -> saveHit(requestBody), callExecutor);
+    }
+
+    @Override
+    public HitBatchResponseDto saveHits(List<EndpointHitDto> requestBody) {
+        statsService.saveHits(requestBody);
+        return HitBatchResponseDto.builder()
+                .accepted(requestBody.size())
+                .rejected(0)
+                .batches(List.of())
+                .build();
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, String uris, boolean unique) {
+        List<String> list = uris == null || uris.isBlank() ? List.of()
+                : Arrays.stream(uris.split(",")).map(String::trim).filter(uri -> !uri.isEmpty()).toList();
+        return getStats(start, end, list, unique);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        try {
+            return statsService.getStats(start, end, uris.stream().distinct().toList(), unique, approximate);
+        } catch (DataAccessException e) {
+            log.warn("Статистика просмотров недоступна, просмотры считаются нулевыми: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<StatsDto>> getStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                           Collection<String> uris, boolean unique) {
+        return CompletableFuture.supplyAsync(() -> getStats(start, end, uris, unique), callExecutor);
+    }
+}
@@ -0,0 +1,104 @@
+-- Сравнение старого (строковые app, uri, ip) и словарного формата таблицы хитов на 50 млн строк.
+-- Только PostgreSQL, запускать на отдельной базе: psql -d stat_bench -f hit-storage.sql
+-- Скрипт выводит размер таблиц с индексами и время типовых запросов /stats на месячном окне.
+\timing on
+SELECT setseed(0.42);
+
+DROP TABLE IF EXISTS bench_hit_legacy, bench_endpoint_hit, bench_hit_app, bench_hit_uri;
+
+CREATE TABLE bench_hit_legacy(
+  hit_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  ip VARCHAR(20) NOT NULL,
+  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- 20 тыс. событий с перекосом популярности, 1 млн адресов, хиты равномерно за год
+INSERT INTO bench_hit_legacy(app, uri, ip, created_date)
+SELECT 'ewm-main-service',
+       CASE WHEN random() < 0.1 THEN '/events' ELSE '/events/' || (1 + floor(power(random(), 3) * 20000))::int END,
+       host('10.0.0.0'::inet + floor(random() * 1000000)::bigint),
+       timestamp '2024-01-01' + random() * interval '365 days'
+FROM generate_series(1, 50000000);
+
+CREATE INDEX bench_hit_legacy_created_date_idx ON bench_hit_legacy(created_date);
+
+CREATE TABLE bench_hit_app(
+  app_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR(100) NOT NULL UNIQUE
+);
+
+CREATE TABLE bench_hit_uri(
+  uri_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR NOT NULL UNIQUE
+);
+
+CREATE TABLE bench_endpoint_hit(
+  hit_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  app_id INTEGER NOT NULL REFERENCES bench_hit_app(app_id),
+  uri_id INTEGER NOT NULL REFERENCES bench_hit_uri(uri_id),
+  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  ip BYTEA NOT NULL
+);
+
+INSERT INTO bench_hit_app(name) SELECT DISTINCT app FROM bench_hit_legacy;
+INSERT INTO bench_hit_uri(name) SELECT DISTINCT uri FROM bench_hit_legacy;
+
+INSERT INTO bench_endpoint_hit(app_id, uri_id, created_date, ip)
+SELECT a.app_id, u.uri_id, h.created_date, decode(lpad(to_hex(h.ip::inet - '0.0.0.0'::inet), 8, '0'), 'hex')
+FROM bench_hit_legacy h
+JOIN bench_hit_app a ON a.name = h.app
+JOIN bench_hit_uri u ON u.name = h.uri;
+
+CREATE INDEX bench_endpoint_hit_created_date_idx ON bench_endpoint_hit(created_date);
+
+VACUUM ANALYZE bench_hit_legacy;
+VACUUM ANALYZE bench_endpoint_hit;
+VACUUM ANALYZE bench_hit_app;
+VACUUM ANALYZE bench_hit_uri;
+
+SELECT relname,
+       pg_size_pretty(pg_relation_size(oid)) AS heap,
+       pg_size_pretty(pg_indexes_size(oid)) AS indexes,
+       pg_size_pretty(pg_total_relation_size(oid)) AS total
+FROM pg_class
+WHERE relname IN ('bench_hit_legacy', 'bench_endpoint_hit', 'bench_hit_app', 'bench_hit_uri')
+ORDER BY relname;
+
+-- /stats без uris
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, count(*) FROM bench_hit_legacy
+WHERE created_date >= '2024-03-01' AND created_date <= '2024-03-31'
+GROUP BY app, uri;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.name, u.name, count(*) FROM bench_endpoint_hit h
+JOIN bench_hit_app a ON a.app_id = h.app_id JOIN bench_hit_uri u ON u.uri_id = h.uri_id
+WHERE h.created_date >= '2024-03-01' AND h.created_date <= '2024-03-31'
+GROUP BY a.app_id, a.name, u.uri_id, u.name;
+
+-- /stats?unique=true без uris
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, count(DISTINCT ip) FROM bench_hit_legacy
+WHERE created_date >= '2024-03-01' AND created_date <= '2024-03-31'
+GROUP BY app, uri;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.name, u.name, count(DISTINCT h.ip) FROM bench_endpoint_hit h
+JOIN bench_hit_app a ON a.app_id = h.app_id JOIN bench_hit_uri u ON u.uri_id = h.uri_id
+WHERE h.created_date >= '2024-03-01' AND h.created_date <= '2024-03-31'
+GROUP BY a.app_id, a.name, u.uri_id, u.name;
+
+-- /stats?uris=...&unique=true, как в запросах основного сервиса
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, count(DISTINCT ip) FROM bench_hit_legacy
+WHERE created_date >= '2024-03-01' AND created_date <= '2024-03-31' AND uri IN ('/events/1', '/events/2', '/events/3')
+GROUP BY app, uri;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.name, u.name, count(DISTINCT h.ip) FROM bench_endpoint_hit h
+JOIN bench_hit_app a ON a.app_id = h.app_id JOIN bench_hit_uri u ON u.uri_id = h.uri_id
+WHERE h.created_date >= '2024-03-01' AND h.created_date <= '2024-03-31'
+  AND u.name IN ('/events/1', '/events/2', '/events/3')
+GROUP BY a.app_id, a.name, u.uri_id, u.name;
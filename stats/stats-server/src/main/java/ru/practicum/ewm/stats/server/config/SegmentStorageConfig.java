@@ -0,0 +1,24 @@
+package ru.practicum.ewm.stats.server.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.ewm.stats.server.segment.SegmentStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Хранилище stats.storage=segment. Источник данных и JPA в этом режиме исключает SegmentStorageEnvironment
+@Configuration
+@ConditionalOnProperty(name = "stats.storage", havingValue = "segment")
+public class SegmentStorageConfig {
+
+    @Bean(destroyMethod = "close")
+    public SegmentStore segmentStore(@Value("${stats.segment.dir:data/segments}") Path directory,
+                                     @Value("${stats.segment.partition:PT1H}") Duration partition,
+                                     @Value("${stats.segment.capacity:1048576}") int capacity) throws IOException {
+        return new SegmentStore(directory, partition, capacity);
+    }
+}
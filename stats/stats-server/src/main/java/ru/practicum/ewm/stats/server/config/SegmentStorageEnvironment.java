@@ -0,0 +1,33 @@
+package ru.practicum.ewm.stats.server.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+// При stats.storage=segment сервису не нужна БД: источник данных, JPA и инициализация схемы исключаются
+// из автоконфигурации, где бы ни была задана настройка — в application.properties, профиле или файле
+// встроенного режима
+public class SegmentStorageEnvironment implements EnvironmentPostProcessor {
+    private static final List<String> EXCLUDED = List.of(
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+            "org.springframework.boot.autoconfigure.sql.init.SqlInitializationAutoConfiguration");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"segment".equals(environment.getProperty("stats.storage"))) {
+            return;
+        }
+        String excluded = String.join(",", EXCLUDED);
+        String configured = environment.getProperty("spring.autoconfigure.exclude");
+        environment.getPropertySources().addFirst(new MapPropertySource("segmentStorage", Map.of(
+                "spring.autoconfigure.exclude", configured == null ? excluded : configured + "," + excluded)));
+    }
+}
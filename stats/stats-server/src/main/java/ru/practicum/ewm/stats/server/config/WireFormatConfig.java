@@ -0,0 +1,19 @@
+package ru.practicum.ewm.stats.server.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.ewm.stats.dto.wire.StatsWireHttpMessageConverter;
+
+import java.util.List;
+
+// Двоичный формат application/x-ewm-stats для /hit, /hit/batch и /stats, выбирается по Content-Type и Accept.
+// Конвертер идёт после Jackson, чтобы на Accept: */* по-прежнему отдавался JSON
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new StatsWireHttpMessageConverter());
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.ewm.stats.server.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import ru.practicum.ewm.stats.server.exception.HitQueueOverflowException;
 
 @RestControllerAdvice
 @Slf4j
@@ -48,4 +50,18 @@ public class ErrorHandler {
     public ErrorResponse handleValidation(final ValidationException e) {
         return new ErrorResponse(e.getMessage());
     }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    @ExceptionHandler
+    public ErrorResponse handleHitQueueOverflow(final HitQueueOverflowException e) {
+        log.debug("Получен статус 429 TOO_MANY_REQUESTS {}", e.getMessage());
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler
+    public ErrorResponse handleMalformedBody(final JsonProcessingException e) {
+        log.debug("Получен статус 400 BAD_REQUEST {}", e.getOriginalMessage());
+        return new ErrorResponse(e.getOriginalMessage());
+    }
 }
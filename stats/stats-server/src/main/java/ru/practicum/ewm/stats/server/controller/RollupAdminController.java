@@ -0,0 +1,59 @@
+package ru.practicum.ewm.stats.server.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewm.stats.server.model.RollupMismatch;
+import ru.practicum.ewm.stats.server.service.RetentionService;
+import ru.practicum.ewm.stats.server.service.RollupService;
+import ru.practicum.ewm.stats.server.service.SketchService;
+import ru.practicum.ewm.stats.server.service.TotalsService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequestMapping("/admin/rollups")
+@RequiredArgsConstructor
+@Slf4j
+public class RollupAdminController {
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final TotalsService totalsService;
+    private final RetentionService retentionService;
+    private static final String TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    @PostMapping("/rebuild")
+    public String rebuild(@RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime start,
+                          @RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime end) {
+        log.info("Поступил запрос на пересчёт агрегатов за период start: {}, end {}", start, end);
+        rollupService.rebuild(start, end);
+        sketchService.rebuild(start, end);
+        return "Агрегаты пересчитаны";
+    }
+
+    @PostMapping("/rebuild-totals")
+    public String rebuildTotals() {
+        log.info("Поступил запрос на пересчёт счётчиков за всё время");
+        totalsService.rebuild();
+        sketchService.rebuildTotals();
+        return "Счётчики за всё время пересчитаны";
+    }
+
+    @PostMapping("/compact")
+    public String compact() {
+        log.info("Поступил запрос на удаление сырых хитов по сроку хранения");
+        retentionService.compact();
+        return "Сжатие сырых хитов выполнено";
+    }
+
+    @GetMapping("/check")
+    public List<RollupMismatch> check(@RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime start,
+                                      @RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime end) {
+        log.info("Поступил запрос на проверку агрегатов за период start: {}, end {}", start, end);
+        return rollupService.check(start, end);
+    }
+}
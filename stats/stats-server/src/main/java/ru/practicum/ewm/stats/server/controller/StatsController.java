@@ -1,25 +1,59 @@
 package ru.practicum.ewm.stats.server.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HistogramDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
 import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.dto.StatsQueryDto;
+import ru.practicum.ewm.stats.dto.TrendingDto;
+import ru.practicum.ewm.stats.dto.wire.StatsWireWriter;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
+import ru.practicum.ewm.stats.server.service.HitBatchProcessor;
 import ru.practicum.ewm.stats.server.service.StatsService;
+import ru.practicum.ewm.stats.server.service.TopService;
+import ru.practicum.ewm.stats.server.service.TrendingService;
+import ru.practicum.ewm.stats.server.service.UriIndexService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 public class StatsController {
     private final StatsService statsService;
+    private final HitBatchProcessor hitBatchProcessor;
+    private final TopService topService;
+    private final TrendingService trendingService;
+    private final UriIndexService uriIndexService;
+    private final ObjectMapper objectMapper;
     private static final String TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
+    @Value("${stats.sketch.approximate-by-default:false}")
+    private boolean approximateByDefault;
+    @Value("${stats.query.max-uris:10000}")
+    private int maxQueryUris;
+
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
     public String saveHit(@RequestBody @Valid EndpointHitDto endpointHitDto) {
@@ -28,13 +62,164 @@ public class StatsController {
         return "Информация сохранена";
     }
 
+    @PostMapping(value = "/hit/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                    StatsWireWriter.MEDIA_TYPE})
+    public ResponseEntity<HitBatchResponseDto> saveHits(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) throws IOException {
+        HitBatchResponseDto result = hitBatchProcessor.process(body,
+                contentType.isCompatibleWith(MediaType.parseMediaType(StatsWireWriter.MEDIA_TYPE)));
+        log.info("Получен пакет хитов: принято {}, отклонено {}", result.getAccepted(), result.getRejected());
+        return ResponseEntity.status(result.getError() == null ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST)
+                .body(result);
+    }
+
     @GetMapping("/stats")
     public List<StatsDto> getStats(@RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime start,
                                    @RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime end,
                                    @RequestParam(defaultValue = "") List<String> uris,
-                                   @RequestParam(defaultValue = "false") boolean unique) {
+                                   @RequestParam(defaultValue = "false") boolean unique,
+                                   @RequestParam(defaultValue = "${stats.sketch.approximate-by-default:false}")
+                                   boolean approximate,
+                                   @RequestParam(defaultValue = "false") boolean aggregate) {
         log.info("Поступил запрос на получение статистики запросов c параметрами start: {}, end {}, uris {}, unique {}",
                 start, end, uris, unique);
-        return statsService.getStats(start, end, uris, unique);
+        return findStats(start, end, uris, unique, approximate, aggregate);
+    }
+
+    // Для больших наборов uri: список в теле запроса не упирается в предел длины url
+    @PostMapping("/stats/query")
+    public List<StatsDto> queryStats(@RequestBody @Valid StatsQueryDto query) {
+        List<String> uris = query.getUris() == null ? List.of() : query.getUris().stream().distinct().toList();
+        if (uris.size() > maxQueryUris) {
+            throw new ValidationException("Число uri в запросе не может превышать " + maxQueryUris);
+        }
+        log.info("Поступил запрос на получение статистики по {} uri c параметрами start: {}, end {}, unique {}",
+                uris.size(), query.getStart(), query.getEnd(), query.isUnique());
+        return findStats(query.getStart(), query.getEnd(), uris, query.isUnique(),
+                query.getApproximate() == null ? approximateByDefault : query.getApproximate(), query.isAggregate());
+    }
+
+    @GetMapping("/stats/top")
+    public List<StatsDto> getTop(@RequestParam(defaultValue = "10") int n,
+                                 @RequestParam(defaultValue = "PT1H") Duration window,
+                                 @RequestParam(required = false) String app) {
+        log.info("Поступил запрос на самые посещаемые uri c параметрами n: {}, window {}, app {}", n, window, app);
+        return topService.getTop(n, window, app);
+    }
+
+    @GetMapping("/stats/trending")
+    public List<TrendingDto> getTrending(@RequestParam(required = false) String app,
+                                         @RequestParam(defaultValue = "10") int n,
+                                         @RequestParam(defaultValue = "PT1H") Duration halfLife) {
+        log.info("Поступил запрос на набирающие популярность uri c параметрами app: {}, n: {}, halfLife {}",
+                app, n, halfLife);
+        return trendingService.getTrending(app, n, halfLife);
+    }
+
+    // Потоковая выдача: строки пишутся в ответ по мере чтения курсора, NDJSON при Accept: application/x-ndjson,
+    // двоичный формат при Accept: application/x-ewm-stats, иначе JSON-массив
+    @GetMapping(value = "/stats", params = "stream=true")
+    public void streamStats(@RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime start,
+                            @RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime end,
+                            @RequestParam(defaultValue = "") List<String> uris,
+                            @RequestParam(defaultValue = "false") boolean unique,
+                            @RequestParam(defaultValue = "HITS_DESC") StatsOrder order,
+                            @RequestParam(required = false) Integer limit,
+                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                            HttpServletResponse response) throws IOException {
+        log.info("Поступил запрос на потоковую выдачу статистики c параметрами start: {}, end {}, uris {}, " +
+                "unique {}, order {}, limit {}", start, end, uris, unique, order, limit);
+        List<String> expanded = uriIndexService.hasPatterns(uris) ? uriIndexService.expand(uris) : uris;
+        boolean wire = accept != null && accept.contains(StatsWireWriter.MEDIA_TYPE);
+        boolean ndjson = !wire && accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        String contentType = wire ? StatsWireWriter.MEDIA_TYPE
+                : ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE;
+        this.<StatsDto>writeStream(response, contentType, wire ? StatsWireWriter::writeStats : null, consumer -> {
+            // Шаблоны, не совпавшие ни с одним uri, дают пустой ответ, а не статистику по всем uri
+            if (!expanded.isEmpty() || uris.isEmpty()) {
+                statsService.streamStats(start, end, expanded, unique, order, limit, consumer);
+            }
+        });
+    }
+
+    // Ряды по интервалам step в полуинтервале [start, end), по одному на app и uri, пишутся по мере чтения.
+    // NDJSON при Accept: application/x-ndjson, иначе JSON-массив
+    @GetMapping("/stats/histogram")
+    public void streamHistogram(@RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime start,
+                                @RequestParam @DateTimeFormat(pattern = TIME_PATTERN) LocalDateTime end,
+                                @RequestParam Duration step,
+                                @RequestParam(defaultValue = "") List<String> uris,
+                                @RequestParam(defaultValue = "false") boolean unique,
+                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                HttpServletResponse response) throws IOException {
+        log.info("Поступил запрос на гистограмму просмотров c параметрами start: {}, end {}, step {}, uris {}, " +
+                "unique {}", start, end, step, uris, unique);
+        List<String> expanded = uriIndexService.hasPatterns(uris) ? uriIndexService.expand(uris) : uris;
+        boolean ndjson = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        String contentType = ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE;
+        this.<HistogramDto>writeStream(response, contentType, null, consumer -> {
+            if (!expanded.isEmpty() || uris.isEmpty()) {
+                statsService.streamHistogram(start, end, step, expanded, unique, consumer);
+            }
+        });
+    }
+
+    private List<StatsDto> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                     boolean approximate, boolean aggregate) {
+        boolean patterns = uriIndexService.hasPatterns(uris);
+        if (!patterns && !aggregate) {
+            return statsService.getStats(start, end, uris, unique, approximate);
+        }
+        List<String> expanded = patterns ? uriIndexService.expand(uris) : uris;
+        if (patterns && expanded.isEmpty()) {
+            return List.of();
+        }
+        List<StatsDto> stats = statsService.getStats(start, end, expanded, unique, approximate);
+        return aggregate ? uriIndexService.aggregate(stats, uris) : stats;
+    }
+
+    // Ответ начинает писаться только с первого элемента, чтобы ошибки проверки параметров ушли обычным 400
+    private <T> void writeStream(HttpServletResponse response, String contentType, WireEncoder<T> encoder,
+                                 Consumer<Consumer<T>> producer) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON_VALUE.equals(contentType);
+        OutputStream out = response.getOutputStream();
+        StatsWireWriter writer = encoder != null ? new StatsWireWriter(out) : null;
+        long[] rows = {0};
+        producer.accept(item -> {
+            try {
+                if (rows[0] == 0) {
+                    response.setContentType(contentType);
+                    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                }
+                rows[0]++;
+                if (writer != null) {
+                    encoder.write(writer, item);
+                    return;
+                }
+                if (!ndjson) {
+                    out.write(rows[0] == 1 ? '[' : ',');
+                }
+                out.write(objectMapper.writeValueAsBytes(item));
+                if (ndjson) {
+                    out.write('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (rows[0] == 0) {
+            response.setContentType(contentType);
+        }
+        if (writer != null) {
+            writer.flush();
+        } else if (!ndjson) {
+            out.write(rows[0] == 0 ? "[]".getBytes(StandardCharsets.UTF_8) : "]".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @FunctionalInterface
+    private interface WireEncoder<T> {
+        void write(StatsWireWriter writer, T item) throws IOException;
     }
 }
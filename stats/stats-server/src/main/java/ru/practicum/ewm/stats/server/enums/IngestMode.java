@@ -0,0 +1,7 @@
+package ru.practicum.ewm.stats.server.enums;
+
+public enum IngestMode {
+    SYNC,
+    ASYNC,
+    SPOOL
+}
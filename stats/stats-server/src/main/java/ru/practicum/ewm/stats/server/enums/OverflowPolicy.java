@@ -0,0 +1,7 @@
+package ru.practicum.ewm.stats.server.enums;
+
+public enum OverflowPolicy {
+    BLOCK,
+    REJECT,
+    DROP
+}
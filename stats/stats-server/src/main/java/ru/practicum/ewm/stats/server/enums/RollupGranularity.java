@@ -0,0 +1,46 @@
+package ru.practicum.ewm.stats.server.enums;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+public enum RollupGranularity {
+    MINUTE("hit_rollup_minute", ChronoUnit.MINUTES),
+    HOUR("hit_rollup_hour", ChronoUnit.HOURS),
+    DAY("hit_rollup_day", ChronoUnit.DAYS);
+
+    public static final List<RollupGranularity> COARSEST_FIRST = List.of(DAY, HOUR, MINUTE);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    RollupGranularity(String table, ChronoUnit unit) {
+        this.table = table;
+        this.unit = unit;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getSketchTable() {
+        return "hit_sketch_" + getUnitName();
+    }
+
+    public String getUnitName() {
+        return unit == ChronoUnit.MINUTES ? "minute" : unit == ChronoUnit.HOURS ? "hour" : "day";
+    }
+
+    public long getSeconds() {
+        return unit.getDuration().toSeconds();
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? time : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.ewm.stats.server.enums;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.util.Comparator;
+
+public enum StatsOrder {
+    HITS_DESC("hits desc, app, uri", Comparator.comparing(StatsDto::getHits).reversed()),
+    HITS_ASC("hits, app, uri", Comparator.comparing(StatsDto::getHits)),
+    URI("uri, app", Comparator.comparing(StatsDto::getUri).thenComparing(StatsDto::getApp));
+
+    private final String orderBy;
+    private final Comparator<StatsDto> comparator;
+
+    StatsOrder(String orderBy, Comparator<StatsDto> comparator) {
+        this.orderBy = orderBy;
+        this.comparator = comparator;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public Comparator<StatsDto> getComparator() {
+        return comparator;
+    }
+}
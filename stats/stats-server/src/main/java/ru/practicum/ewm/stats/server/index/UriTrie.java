@@ -0,0 +1,150 @@
+package ru.practicum.ewm.stats.server.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Префиксное дерево известных uri по сегментам пути. В шаблоне сегмент * совпадает с одним любым сегментом,
+// последний сегмент ** — с любым продолжением, включая пустое: /events/* и /events/** для /events/1/comments
+public class UriTrie {
+    public static final String ANY_SEGMENT = "*";
+    public static final String ANY_SUFFIX = "**";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final int maxSize;
+    private int size;
+
+    public UriTrie(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static boolean isPattern(String uri) {
+        for (String segment : segments(uri)) {
+            if (segment.equals(ANY_SEGMENT) || segment.equals(ANY_SUFFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean matches(String pattern, String uri) {
+        return matches(segments(pattern), 0, segments(uri), 0);
+    }
+
+    // false, если дерево заполнено и uri в него не попал
+    public boolean add(String uri) {
+        String[] segments = segments(uri);
+        lock.readLock().lock();
+        try {
+            if (find(segments) != null) {
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            Node node = find(segments);
+            if (node != null) {
+                return true;
+            }
+            if (size >= maxSize) {
+                return false;
+            }
+            node = root;
+            for (String segment : segments) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.uri = uri;
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> match(String pattern) {
+        List<String> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            collect(root, segments(pattern), 0, result::add);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node find(String[] segments) {
+        Node node = root;
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.uri != null ? node : null;
+    }
+
+    private static void collect(Node node, String[] pattern, int index, Consumer<String> consumer) {
+        if (index == pattern.length) {
+            if (node.uri != null) {
+                consumer.accept(node.uri);
+            }
+            return;
+        }
+        String segment = pattern[index];
+        if (segment.equals(ANY_SUFFIX) && index == pattern.length - 1) {
+            collectAll(node, consumer);
+        } else if (segment.equals(ANY_SEGMENT)) {
+            node.children.values().forEach(child -> collect(child, pattern, index + 1, consumer));
+        } else {
+            Node child = node.children.get(segment);
+            if (child != null) {
+                collect(child, pattern, index + 1, consumer);
+            }
+        }
+    }
+
+    private static void collectAll(Node node, Consumer<String> consumer) {
+        if (node.uri != null) {
+            consumer.accept(node.uri);
+        }
+        node.children.values().forEach(child -> collectAll(child, consumer));
+    }
+
+    private static boolean matches(String[] pattern, int p, String[] uri, int u) {
+        if (p == pattern.length) {
+            return u == uri.length;
+        }
+        if (pattern[p].equals(ANY_SUFFIX) && p == pattern.length - 1) {
+            return true;
+        }
+        if (u == uri.length) {
+            return false;
+        }
+        return (pattern[p].equals(ANY_SEGMENT) || pattern[p].equals(uri[u])) && matches(pattern, p + 1, uri, u + 1);
+    }
+
+    private static String[] segments(String uri) {
+        return uri.split("/", -1);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String uri;
+    }
+}
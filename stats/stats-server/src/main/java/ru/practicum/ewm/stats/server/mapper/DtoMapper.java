@@ -2,7 +2,14 @@ package ru.practicum.ewm.stats.server.mapper;
 
 import lombok.experimental.UtilityClass;
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.model.AppUri;
 import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.HitTotal;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 @UtilityClass
 public class DtoMapper {
@@ -11,8 +18,22 @@ public class DtoMapper {
         return EndpointHit.builder()
                 .app(endpointHitDto.getApp())
                 .uri(endpointHitDto.getUri())
-                .ip(endpointHitDto.getIp())
+                .ip(IpCodec.normalize(endpointHitDto.getIp()))
                 .createdDate(endpointHitDto.getTimestamp())
                 .build();
     }
+
+    public List<StatsDto> toStatsDtos(Map<AppUri, Long> hits) {
+        return hits.entrySet().stream()
+                .map(entry -> new StatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    public List<StatsDto> totalsToStatsDtos(List<HitTotal> totals) {
+        return totals.stream()
+                .map(total -> new StatsDto(total.app(), total.uri(), total.hits()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
 }
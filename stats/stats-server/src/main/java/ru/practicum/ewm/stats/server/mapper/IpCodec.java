@@ -0,0 +1,101 @@
+package ru.practicum.ewm.stats.server.mapper;
+
+import jakarta.validation.ValidationException;
+import lombok.experimental.UtilityClass;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+// IPv4 хранится в 4 байтах, IPv6 — в 16. Строка адреса приводится к канонической форме InetAddress.
+// Значение, не являющееся адресом, хранится как есть: нулевой байт и UTF-8, при длине 4 или 16 байт
+// дописывается ещё один нулевой байт, поэтому такая запись не совпадает по длине с адресом
+@UtilityClass
+public class IpCodec {
+    private static final int IPV4_LENGTH = 4;
+    private static final int IPV6_LENGTH = 16;
+
+    public byte[] encode(String ip) {
+        if (ip == null || ip.isBlank() || ip.indexOf('\0') >= 0) {
+            throw new ValidationException("Некорректный ip: " + ip);
+        }
+        byte[] address = parse(ip);
+        return address != null ? address : encodeRaw(ip);
+    }
+
+    public String decode(byte[] stored) {
+        if (isAddress(stored)) {
+            try {
+                return InetAddress.getByAddress(stored).getHostAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException("Некорректная длина сохранённого ip: " + stored.length, e);
+            }
+        }
+        if (stored.length < 2 || stored[0] != 0) {
+            throw new IllegalStateException("Некорректный сохранённый ip длиной " + stored.length);
+        }
+        int end = stored[stored.length - 1] == 0 ? stored.length - 1 : stored.length;
+        return new String(stored, 1, end - 1, StandardCharsets.UTF_8);
+    }
+
+    public String normalize(String ip) {
+        return decode(encode(ip));
+    }
+
+    public boolean isValid(String ip) {
+        try {
+            encode(ip);
+            return true;
+        } catch (ValidationException e) {
+            return false;
+        }
+    }
+
+    public boolean isAddress(byte[] stored) {
+        return stored.length == IPV4_LENGTH || stored.length == IPV6_LENGTH;
+    }
+
+    private byte[] parse(String ip) {
+        if (ip.indexOf(':') < 0) {
+            return parseIpv4(ip);
+        }
+        try {
+            // адрес с двоеточием разбирается как литерал IPv6, без обращения к DNS
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private byte[] encodeRaw(String ip) {
+        byte[] text = ip.getBytes(StandardCharsets.UTF_8);
+        int length = text.length + 1;
+        byte[] stored = new byte[length == IPV4_LENGTH || length == IPV6_LENGTH ? length + 1 : length];
+        System.arraycopy(text, 0, stored, 1, text.length);
+        return stored;
+    }
+
+    private byte[] parseIpv4(String ip) {
+        byte[] address = new byte[IPV4_LENGTH];
+        int part = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || part == IPV4_LENGTH) {
+                    return null;
+                }
+                address[part++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return part == IPV4_LENGTH ? address : null;
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.ewm.stats.server.model;
+
+public record AppUri(String app, String uri) {
+}
@@ -1,13 +1,10 @@
 package ru.practicum.ewm.stats.server.model;
 
-import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDateTime;
 
-@Entity
-@Table(name = "hit")
 @ToString
 @Getter
 @Setter
@@ -16,13 +13,8 @@ import java.time.LocalDateTime;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Builder(toBuilder = true)
 public class EndpointHit {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "hit_id")
-    Long id;
     String app;
     String uri;
     String ip;
-    @Column(name = "created_date")
     LocalDateTime createdDate;
 }
@@ -0,0 +1,4 @@
+package ru.practicum.ewm.stats.server.model;
+
+public record HistogramPoint(String app, String uri, long index, long hits) {
+}
@@ -0,0 +1,14 @@
+package ru.practicum.ewm.stats.server.model;
+
+import java.time.LocalDateTime;
+
+public record HitTotal(String app, String uri, long hits, LocalDateTime firstHit, LocalDateTime lastHit) {
+
+    public AppUri appUri() {
+        return new AppUri(app, uri);
+    }
+
+    public boolean isWithin(LocalDateTime start, LocalDateTime end) {
+        return !firstHit.isBefore(start) && !lastHit.isAfter(end);
+    }
+}
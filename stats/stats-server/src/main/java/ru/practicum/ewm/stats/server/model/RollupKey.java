@@ -0,0 +1,10 @@
+package ru.practicum.ewm.stats.server.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(String app, String uri, LocalDateTime bucket) {
+    public static final Comparator<RollupKey> LOCK_ORDER = Comparator.comparing(RollupKey::bucket)
+            .thenComparing(RollupKey::app)
+            .thenComparing(RollupKey::uri);
+}
@@ -0,0 +1,6 @@
+package ru.practicum.ewm.stats.server.model;
+
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+
+public record RollupMismatch(RollupGranularity granularity, String app, String uri, long rawHits, long rollupHits) {
+}
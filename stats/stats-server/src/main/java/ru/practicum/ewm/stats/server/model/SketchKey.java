@@ -0,0 +1,17 @@
+package ru.practicum.ewm.stats.server.model;
+
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+// Ключ без гранулярности и бакета обозначает скетч за всё время
+public record SketchKey(RollupGranularity granularity, String app, String uri, LocalDateTime bucket) {
+
+    public static SketchKey total(String app, String uri) {
+        return new SketchKey(null, app, uri, null);
+    }
+
+    public boolean isTotal() {
+        return granularity == null;
+    }
+}
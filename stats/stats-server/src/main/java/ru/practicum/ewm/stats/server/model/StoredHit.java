@@ -0,0 +1,31 @@
+package ru.practicum.ewm.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+// Строка таблицы endpoint_hit: app и uri хранятся ссылками на словари, ip — 4 или 16 байт
+@Entity
+@Table(name = "endpoint_hit")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StoredHit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "hit_id")
+    Long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "app_id")
+    HitApp app;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "uri_id")
+    HitUri uri;
+    byte[] ip;
+    @Column(name = "created_date")
+    LocalDateTime createdDate;
+}
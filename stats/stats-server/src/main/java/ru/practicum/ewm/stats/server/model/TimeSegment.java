@@ -0,0 +1,12 @@
+package ru.practicum.ewm.stats.server.model;
+
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+public record TimeSegment(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
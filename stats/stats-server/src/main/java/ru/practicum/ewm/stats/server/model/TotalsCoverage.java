@@ -0,0 +1,6 @@
+package ru.practicum.ewm.stats.server.model;
+
+import java.util.List;
+
+public record TotalsCoverage(List<HitTotal> covered, List<String> remainingUris, boolean complete) {
+}
@@ -0,0 +1,211 @@
+package ru.practicum.ewm.stats.server.recent;
+
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Кольцевые буферы счётчиков хитов: посекундные за короткий горизонт и поминутные за длинный.
+// Время — секунды эпохи, пара (app, uri) интернируется в id, счётчики лежат в массивах int по этому id.
+// Окно можно отдать из памяти, только если с completeSince в буферы попал каждый хит
+public class RecentHitCounters {
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private final int secondSlots;
+    private final int minuteSlots;
+    private final int maxKeys;
+    private final Map<AppUri, Integer> ids = new HashMap<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private final AppUri[] keys;
+    private final int[][] seconds;
+    private final int[][] minutes;
+    private final long[] lastSecond;
+    private int nextId;
+    private long headSecond;
+    private long completeSince;
+    private long skippedFrom = Long.MAX_VALUE;
+    private long skippedTo = Long.MIN_VALUE;
+    private long evicted;
+
+    public RecentHitCounters(int secondSlots, int minuteSlots, int maxKeys, long startSecond) {
+        if (secondSlots < SECONDS_PER_MINUTE || minuteSlots < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Горизонт посекундных счётчиков должен быть не меньше минуты");
+        }
+        this.secondSlots = secondSlots;
+        this.minuteSlots = minuteSlots;
+        this.maxKeys = maxKeys;
+        this.keys = new AppUri[maxKeys];
+        this.seconds = new int[maxKeys][];
+        this.minutes = new int[maxKeys][];
+        this.lastSecond = new long[maxKeys];
+        this.headSecond = startSecond;
+        // хиты той же секунды могли быть записаны до старта
+        this.completeSince = startSecond + 1;
+    }
+
+    public synchronized void add(AppUri key, long second, long nowSecond, long maxAcceptedSecond) {
+        advance(nowSecond);
+        if (second > maxAcceptedSecond) {
+            skippedFrom = Math.min(skippedFrom, second);
+            skippedTo = Math.max(skippedTo, second);
+            return;
+        }
+        advance(second);
+        if (second < Math.max(completeSince, minuteRingStart())) {
+            return;
+        }
+        int id = idOf(key);
+        if (second >= secondRingStart()) {
+            seconds[id][slot(second, secondSlots)]++;
+        }
+        minutes[id][slot(Math.floorDiv(second, SECONDS_PER_MINUTE), minuteSlots)]++;
+        lastSecond[id] = Math.max(lastSecond[id], second);
+    }
+
+    // Возвращает null, если окно [start, end] нельзя посчитать по памяти
+    public synchronized Map<AppUri, Long> sum(long start, long end, Set<String> uris, long nowSecond) {
+        advance(nowSecond);
+        if (start < Math.max(completeSince, minuteRingStart()) || start <= skippedTo && end >= skippedFrom) {
+            return null;
+        }
+        long to = Math.min(end, headSecond);
+        // Целые минуты окна берутся из поминутного кольца, посекундное читается только на краях
+        long firstMinute = Math.ceilDiv(start, SECONDS_PER_MINUTE);
+        long endMinute = Math.max(firstMinute, Math.floorDiv(to + 1, SECONDS_PER_MINUTE));
+        long headEnd = Math.min(firstMinute * SECONDS_PER_MINUTE, to + 1);
+        long tailStart = Math.max(endMinute * SECONDS_PER_MINUTE, headEnd);
+        if (start < headEnd && start < secondRingStart() || tailStart <= to && tailStart < secondRingStart()) {
+            return null;
+        }
+        Map<AppUri, Long> result = new HashMap<>();
+        for (int id = 0; id < nextId; id++) {
+            AppUri key = keys[id];
+            if (key == null || lastSecond[id] < start || !uris.isEmpty() && !uris.contains(key.uri())) {
+                continue;
+            }
+            long hits = 0;
+            for (long second = start; second < headEnd; second++) {
+                hits += seconds[id][slot(second, secondSlots)];
+            }
+            for (long minute = firstMinute; minute < endMinute; minute++) {
+                hits += minutes[id][slot(minute, minuteSlots)];
+            }
+            for (long second = tailStart; second <= to; second++) {
+                hits += seconds[id][slot(second, secondSlots)];
+            }
+            if (hits > 0) {
+                result.put(key, hits);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    public synchronized long memoryBytes() {
+        return (long) nextId * (secondSlots + minuteSlots) * Integer.BYTES + (long) maxKeys * Long.BYTES;
+    }
+
+    public synchronized long evicted() {
+        return evicted;
+    }
+
+    private void advance(long second) {
+        if (second <= headSecond) {
+            return;
+        }
+        long fromSecond = Math.max(headSecond + 1, second - secondSlots + 1);
+        long fromMinute = Math.max(Math.floorDiv(headSecond, SECONDS_PER_MINUTE) + 1,
+                Math.floorDiv(second, SECONDS_PER_MINUTE) - minuteSlots + 1);
+        long toMinute = Math.floorDiv(second, SECONDS_PER_MINUTE);
+        for (int id = 0; id < nextId; id++) {
+            for (long s = fromSecond; s <= second; s++) {
+                seconds[id][slot(s, secondSlots)] = 0;
+            }
+            for (long m = fromMinute; m <= toMinute; m++) {
+                minutes[id][slot(m, minuteSlots)] = 0;
+            }
+        }
+        boolean minuteChanged = toMinute != Math.floorDiv(headSecond, SECONDS_PER_MINUTE);
+        headSecond = second;
+        if (skippedTo < minuteRingStart()) {
+            skippedFrom = Long.MAX_VALUE;
+            skippedTo = Long.MIN_VALUE;
+        }
+        if (minuteChanged) {
+            releaseCold();
+        }
+    }
+
+    // uri без хитов в пределах горизонта освобождаются без потери полноты
+    private void releaseCold() {
+        long ringStart = minuteRingStart();
+        for (int id = 0; id < nextId; id++) {
+            if (keys[id] != null && lastSecond[id] < ringStart) {
+                release(id);
+            }
+        }
+    }
+
+    private int idOf(AppUri key) {
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int id;
+        if (!freeIds.isEmpty()) {
+            id = freeIds.pop();
+        } else if (nextId < maxKeys) {
+            id = nextId++;
+            seconds[id] = new int[secondSlots];
+            minutes[id] = new int[minuteSlots];
+        } else {
+            id = evictColdest();
+        }
+        keys[id] = key;
+        lastSecond[id] = Long.MIN_VALUE;
+        ids.put(key, id);
+        return id;
+    }
+
+    // Вытесненный uri терял хиты до своего последнего хита включительно, поэтому граница полноты сдвигается за него.
+    // Вытесняется самый холодный uri, так что отрезается только самая старая история
+    private int evictColdest() {
+        int victim = 0;
+        for (int id = 1; id < nextId; id++) {
+            if (lastSecond[id] < lastSecond[victim]) {
+                victim = id;
+            }
+        }
+        completeSince = Math.max(completeSince, lastSecond[victim] + 1);
+        evicted++;
+        release(victim);
+        return freeIds.pop();
+    }
+
+    private void release(int id) {
+        ids.remove(keys[id]);
+        keys[id] = null;
+        Arrays.fill(seconds[id], 0);
+        Arrays.fill(minutes[id], 0);
+        freeIds.push(id);
+    }
+
+    private long secondRingStart() {
+        return headSecond - secondSlots + 1;
+    }
+
+    private long minuteRingStart() {
+        return (Math.floorDiv(headSecond, SECONDS_PER_MINUTE) - minuteSlots + 1) * SECONDS_PER_MINUTE;
+    }
+
+    private static int slot(long index, int slots) {
+        return (int) Math.floorMod(index, slots);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Словари app и uri. Новые значения вставляются в отдельной транзакции: откат записи хитов
+// не должен удалить строку словаря, id которой уже лежит в кэше
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class DictionaryRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final String insertApp;
+    private final String insertUri;
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    public DictionaryRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                                PlatformTransactionManager transactionManager, SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.insertApp = sqlDialect.insertIgnoring("hit_app", "name");
+        this.insertUri = sqlDialect.insertIgnoring("hit_uri", "name");
+    }
+
+    public Map<String, Integer> getAppIds(Collection<String> names) {
+        return resolve("hit_app", "app_id", insertApp, appIds, names);
+    }
+
+    public Map<String, Integer> getUriIds(Collection<String> names) {
+        return resolve("hit_uri", "uri_id", insertUri, uriIds, names);
+    }
+
+    public List<String> findAppNames() {
+        return jdbcTemplate.queryForList("select name from hit_app", String.class);
+    }
+
+    public long forEachUriNameAfter(long afterId, Consumer<String> consumer) {
+        long[] last = {afterId};
+        jdbcTemplate.query("select uri_id, name from hit_uri where uri_id > ? order by uri_id",
+                (RowCallbackHandler) rs -> {
+                    last[0] = rs.getLong(1);
+                    consumer.accept(rs.getString(2));
+                }, afterId);
+        return last[0];
+    }
+
+    public List<String> findUriNamesByPrefix(String prefix) {
+        String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return jdbcTemplate.queryForList("select name from hit_uri where name like ? escape '\\'", String.class,
+                escaped + "%");
+    }
+
+    private Map<String, Integer> resolve(String table, String idColumn, String insert, Map<String, Integer> cache,
+                                         Collection<String> names) {
+        Map<String, Integer> result = new HashMap<>();
+        SortedSet<String> missing = new TreeSet<>();
+        for (String name : names) {
+            Integer id = cache.get(name);
+            if (id != null) {
+                result.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        List<String> sorted = List.copyOf(missing);
+        newTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(insert, sorted, sorted.size(), (ps, name) -> ps.setString(1, name));
+            namedJdbcTemplate.query("select " + idColumn + ", name from " + table + " where name in (:names)",
+                    Map.of("names", sorted), (RowCallbackHandler) rs -> {
+                        cache.put(rs.getString(2), rs.getInt(1));
+                        result.put(rs.getString(2), rs.getInt(1));
+                    });
+        });
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.server.mapper.IpCodec;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class HitJdbcRepository {
+    private static final String INSERT_HIT = "insert into endpoint_hit(app_id, uri_id, ip, created_date) " +
+            "values (?, ?, ?, ?)";
+    private static final String HIT_JOIN = "endpoint_hit h join hit_app a on a.app_id = h.app_id " +
+            "join hit_uri u on u.uri_id = h.uri_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DictionaryRepository dictionaryRepository;
+    private final SqlDialect sqlDialect;
+
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = dictionaryRepository.getAppIds(distinct(hits, EndpointHit::getApp));
+        Map<String, Integer> uriIds = dictionaryRepository.getUriIds(distinct(hits, EndpointHit::getUri));
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, appIds.get(hit.getApp()));
+            ps.setInt(2, uriIds.get(hit.getUri()));
+            ps.setBytes(3, IpCodec.encode(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getCreatedDate()));
+        });
+    }
+
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, List<String> uris,
+                                  Consumer<EndpointHit> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "select distinct a.name as app, u.name as uri, h.ip from " + HIT_JOIN +
+                " where h.created_date >= :from and h.created_date < :to";
+        if (!uris.isEmpty()) {
+            sql += " and " + sqlDialect.anyOf("u.name", "uris");
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> consumer.accept(EndpointHit.builder()
+                .app(rs.getString("app"))
+                .uri(rs.getString("uri"))
+                .ip(IpCodec.decode(rs.getBytes("ip")))
+                .build()));
+    }
+
+    public void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query("select a.name as app, u.name as uri, h.ip, h.created_date from " + HIT_JOIN +
+                        " where h.created_date >= ? and h.created_date < ?",
+                (RowCallbackHandler) rs -> consumer.accept(EndpointHit.builder()
+                        .app(rs.getString("app"))
+                        .uri(rs.getString("uri"))
+                        .ip(IpCodec.decode(rs.getBytes("ip")))
+                        .createdDate(rs.getObject("created_date", LocalDateTime.class))
+                        .build()), from, to);
+    }
+
+    public LocalDateTime[] getRawRange() {
+        return jdbcTemplate.queryForObject("select min(created_date), max(created_date) from endpoint_hit",
+                (rs, rowNum) -> new LocalDateTime[]{rs.getObject(1, LocalDateTime.class),
+                        rs.getObject(2, LocalDateTime.class)});
+    }
+
+    public int deleteBefore(String app, LocalDateTime before) {
+        return jdbcTemplate.update("delete from endpoint_hit " +
+                "where app_id = (select app_id from hit_app where name = ?) and created_date < ?", app, before);
+    }
+
+    private static Set<String> distinct(List<EndpointHit> hits, Function<EndpointHit, String> field) {
+        return hits.stream().map(field).collect(Collectors.toSet());
+    }
+}
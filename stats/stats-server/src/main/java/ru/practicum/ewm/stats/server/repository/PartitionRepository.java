@@ -0,0 +1,61 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Дневные партиции endpoint_hit в PostgreSQL. Хиты вне созданных партиций попадают в endpoint_hit_default,
+// при создании партиции на такой день его строки переносятся из неё. В H2 таблица не партиционирована
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class PartitionRepository {
+    private static final String PREFIX = "endpoint_hit_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean partitioned;
+
+    public PartitionRepository(JdbcTemplate jdbcTemplate, SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitioned = sqlDialect.isPostgres() && jdbcTemplate.queryForList("select c.relkind::text " +
+                "from pg_class c where c.oid = to_regclass('endpoint_hit')", String.class).contains("p");
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    public List<LocalDate> findAll() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                        "where i.inhparent = to_regclass('endpoint_hit') and c.relname like 'endpoint\\_hit\\_p%'",
+                String.class).stream()
+                .map(name -> LocalDate.parse(name.substring(PREFIX.length()), SUFFIX))
+                .toList();
+    }
+
+    // Выполняется в транзакции вызывающего
+    public void create(LocalDate day) {
+        String name = PREFIX + day.format(SUFFIX);
+        String bounds = "for values from ('" + day + "') to ('" + day.plusDays(1) + "')";
+        Integer misplaced = jdbcTemplate.queryForObject("select count(*) from endpoint_hit_default " +
+                "where created_date >= ? and created_date < ?", Integer.class, day, day.plusDays(1));
+        if (misplaced == null || misplaced == 0) {
+            jdbcTemplate.execute("create table if not exists " + name + " partition of endpoint_hit " + bounds);
+            return;
+        }
+        jdbcTemplate.execute("create table " + name + " (like endpoint_hit including defaults including constraints)");
+        jdbcTemplate.update("insert into " + name + " select * from endpoint_hit_default " +
+                "where created_date >= ? and created_date < ?", day, day.plusDays(1));
+        jdbcTemplate.update("delete from endpoint_hit_default where created_date >= ? and created_date < ?",
+                day, day.plusDays(1));
+        jdbcTemplate.execute("alter table endpoint_hit attach partition " + name + " " + bounds);
+    }
+
+    public void drop(LocalDate day) {
+        jdbcTemplate.execute("drop table if exists " + PREFIX + day.format(SUFFIX));
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Для каждого app хранится граница, раньше которой его сырые хиты удалены и остались только в агрегатах
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class RetentionRepository {
+    private static final String[] KEY_COLUMNS = {"app"};
+    private static final String[] KEY_TYPES = {"varchar"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsert;
+
+    public RetentionRepository(JdbcTemplate jdbcTemplate, SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsert = sqlDialect.upsertReplacing("hit_retention", KEY_COLUMNS, KEY_TYPES, "compacted_before",
+                "timestamp");
+    }
+
+    public void save(String app, LocalDateTime compactedBefore) {
+        jdbcTemplate.update(upsert, app, Timestamp.valueOf(compactedBefore));
+    }
+
+    public Map<String, LocalDateTime> findAll() {
+        Map<String, LocalDateTime> result = new HashMap<>();
+        jdbcTemplate.query("select app, compacted_before from hit_retention", (RowCallbackHandler) rs ->
+                result.put(rs.getString("app"), rs.getObject("compacted_before", LocalDateTime.class)));
+        return result;
+    }
+
+    // Самая поздняя из границ: начиная с неё сырые хиты есть по всем app
+    public Optional<LocalDateTime> getHorizon() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("select max(compacted_before) from hit_retention",
+                (rs, rowNum) -> rs.getObject(1, LocalDateTime.class)));
+    }
+}
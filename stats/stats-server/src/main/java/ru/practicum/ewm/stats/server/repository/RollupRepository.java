@@ -0,0 +1,98 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class RollupRepository {
+    private static final String[] KEY_COLUMNS = {"bucket", "app", "uri"};
+    private static final String[] KEY_TYPES = {"timestamp", "varchar", "varchar"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final Map<RollupGranularity, String> upserts = new EnumMap<>(RollupGranularity.class);
+
+    public RollupRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            upserts.put(granularity, sqlDialect.upsertAdding(granularity.getTable(), KEY_COLUMNS, KEY_TYPES, "hits"));
+        }
+    }
+
+    public void increment(RollupGranularity granularity, List<Map.Entry<RollupKey, Long>> deltas) {
+        jdbcTemplate.batchUpdate(upserts.get(granularity), deltas, deltas.size(), (ps, delta) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(delta.getKey().bucket()));
+            ps.setString(2, delta.getKey().app());
+            ps.setString(3, delta.getKey().uri());
+            ps.setLong(4, delta.getValue());
+        });
+    }
+
+    public List<StatsDto> getStats(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                   List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "select app, uri, sum(hits) as hits from " + granularity.getTable() +
+                " where bucket >= :from and bucket < :to";
+        if (!uris.isEmpty()) {
+            sql += " and " + sqlDialect.anyOf("uri", "uris");
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        sql += " group by app, uri";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new StatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    public void forEachBucket(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                              ObjLongConsumer<RollupKey> consumer) {
+        jdbcTemplate.query("select bucket, app, uri, hits from " + granularity.getTable() +
+                " where bucket >= ? and bucket < ?", (RowCallbackHandler) rs -> consumer.accept(new RollupKey(
+                rs.getString("app"), rs.getString("uri"), rs.getObject("bucket", LocalDateTime.class)),
+                rs.getLong("hits")), from, to);
+    }
+
+    public void delete(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.update("delete from " + granularity.getTable() + " where bucket >= ? and bucket < ?", from, to);
+    }
+
+    public void rebuildFromRaw(LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.update("insert into hit_rollup_minute(bucket, app, uri, hits) " +
+                "select r.bucket, a.name, u.name, r.hits from (" +
+                "select date_trunc('minute', created_date) as bucket, app_id, uri_id, count(*) as hits " +
+                "from endpoint_hit where created_date >= ? and created_date < ? " +
+                "group by date_trunc('minute', created_date), app_id, uri_id) r " +
+                "join hit_app a on a.app_id = r.app_id join hit_uri u on u.uri_id = r.uri_id", from, to);
+    }
+
+    public void rebuildFromFiner(RollupGranularity granularity, RollupGranularity finer, LocalDateTime from,
+                                 LocalDateTime to) {
+        String bucket = "date_trunc('" + granularity.getUnitName() + "', bucket)";
+        jdbcTemplate.update("insert into " + granularity.getTable() + "(bucket, app, uri, hits) " +
+                "select " + bucket + ", app, uri, sum(hits) from " + finer.getTable() +
+                " where bucket >= ? and bucket < ? group by " + bucket + ", app, uri", from, to);
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("select 1 from hit_rollup_minute limit 1", Integer.class).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.SketchKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class SketchRepository {
+    private static final String[] KEY_COLUMNS = {"bucket", "app", "uri"};
+    private static final String[] KEY_TYPES = {"timestamp", "varchar", "varchar"};
+    private static final String[] TOTAL_KEY_COLUMNS = {"app", "uri"};
+    private static final String[] TOTAL_KEY_TYPES = {"varchar", "varchar"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final Map<RollupGranularity, String> upserts = new EnumMap<>(RollupGranularity.class);
+    private final String totalUpsert;
+    private final Map<RollupGranularity, String> inserts = new EnumMap<>(RollupGranularity.class);
+    private final String totalInsert;
+
+    public SketchRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        for (RollupGranularity granularity : List.of(RollupGranularity.HOUR, RollupGranularity.DAY)) {
+            upserts.put(granularity, sqlDialect.upsertReplacing(granularity.getSketchTable(), KEY_COLUMNS, KEY_TYPES,
+                    "registers", "bytea"));
+            inserts.put(granularity, sqlDialect.insertIgnoring(granularity.getSketchTable(), KEY_COLUMNS, KEY_TYPES,
+                    "registers", "bytea"));
+        }
+        this.totalUpsert = sqlDialect.upsertReplacing("hit_sketch_total", TOTAL_KEY_COLUMNS, TOTAL_KEY_TYPES,
+                "registers", "bytea");
+        this.totalInsert = sqlDialect.insertIgnoring("hit_sketch_total", TOTAL_KEY_COLUMNS, TOTAL_KEY_TYPES,
+                "registers", "bytea");
+    }
+
+    // Читает скетч с блокировкой строки до конца транзакции
+    public byte[] findForUpdate(SketchKey key) {
+        if (key.isTotal()) {
+            List<byte[]> result = jdbcTemplate.query("select registers from hit_sketch_total " +
+                    "where app = ? and uri = ? for update", (rs, rowNum) -> rs.getBytes(1), key.app(), key.uri());
+            return result.isEmpty() ? null : result.getFirst();
+        }
+        List<byte[]> result = jdbcTemplate.query("select registers from " + key.granularity().getSketchTable() +
+                        " where bucket = ? and app = ? and uri = ? for update", (rs, rowNum) -> rs.getBytes(1),
+                Timestamp.valueOf(key.bucket()), key.app(), key.uri());
+        return result.isEmpty() ? null : result.getFirst();
+    }
+
+    // Возвращает false, если строка с этим ключом уже есть
+    public boolean insertIfAbsent(SketchKey key, byte[] registers) {
+        if (key.isTotal()) {
+            return jdbcTemplate.update(totalInsert, key.app(), key.uri(), registers) > 0;
+        }
+        return jdbcTemplate.update(inserts.get(key.granularity()), Timestamp.valueOf(key.bucket()), key.app(),
+                key.uri(), registers) > 0;
+    }
+
+    public void save(SketchKey key, byte[] registers) {
+        if (key.isTotal()) {
+            jdbcTemplate.update(totalUpsert, key.app(), key.uri(), registers);
+            return;
+        }
+        jdbcTemplate.update(upserts.get(key.granularity()), Timestamp.valueOf(key.bucket()), key.app(), key.uri(),
+                registers);
+    }
+
+    public void delete(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.update("delete from " + granularity.getSketchTable() + " where bucket >= ? and bucket < ?",
+                from, to);
+    }
+
+    public void forEach(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris,
+                        BiConsumer<AppUri, byte[]> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "select app, uri, registers from " + granularity.getSketchTable() +
+                " where bucket >= :from and bucket < :to";
+        if (!uris.isEmpty()) {
+            sql += " and " + sqlDialect.anyOf("uri", "uris");
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(new AppUri(rs.getString("app"), rs.getString("uri")), rs.getBytes("registers")));
+    }
+
+    public void forEach(RollupGranularity granularity, BiConsumer<AppUri, byte[]> consumer) {
+        jdbcTemplate.query("select app, uri, registers from " + granularity.getSketchTable(), (RowCallbackHandler) rs ->
+                consumer.accept(new AppUri(rs.getString("app"), rs.getString("uri")), rs.getBytes("registers")));
+    }
+
+    public void forEachTotal(List<String> uris, BiConsumer<AppUri, byte[]> consumer) {
+        RowCallbackHandler handler = rs ->
+                consumer.accept(new AppUri(rs.getString("app"), rs.getString("uri")), rs.getBytes("registers"));
+        if (uris.isEmpty()) {
+            jdbcTemplate.query("select app, uri, registers from hit_sketch_total", handler);
+        } else {
+            namedJdbcTemplate.query("select app, uri, registers from hit_sketch_total where " +
+                    sqlDialect.anyOf("uri", "uris"), Map.of("uris", sqlDialect.arrayOf(uris)), handler);
+        }
+    }
+
+    public void deleteTotals() {
+        jdbcTemplate.update("delete from hit_sketch_total");
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("select 1 from hit_sketch_hour limit 1", Integer.class).isEmpty();
+    }
+
+    public boolean isTotalsEmpty() {
+        return jdbcTemplate.queryForList("select 1 from hit_sketch_total limit 1", Integer.class).isEmpty();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.server.spool.SpoolPosition;
+
+import java.util.Optional;
+
+// Позиция журнала хитов, до которой хиты перенесены в БД. Сохраняется в транзакции записи хитов,
+// поэтому после сбоя пакет не переносится повторно
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SpoolCheckpointRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<SpoolPosition> find(String spoolId) {
+        return jdbcTemplate.query("select segment, position from hit_spool_checkpoint where spool_id = ?",
+                (rs, rowNum) -> new SpoolPosition(rs.getLong("segment"), rs.getLong("position")), spoolId)
+                .stream()
+                .findFirst();
+    }
+
+    public void save(String spoolId, SpoolPosition position) {
+        int updated = jdbcTemplate.update("update hit_spool_checkpoint set segment = ?, position = ? " +
+                "where spool_id = ?", position.segment(), position.offset(), spoolId);
+        if (updated == 0) {
+            jdbcTemplate.update("insert into hit_spool_checkpoint(spool_id, segment, position) values (?, ?, ?)",
+                    spoolId, position.segment(), position.offset());
+        }
+    }
+}
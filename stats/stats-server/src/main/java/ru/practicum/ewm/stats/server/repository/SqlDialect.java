@@ -0,0 +1,109 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class SqlDialect {
+    private final boolean postgres;
+
+    public SqlDialect(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        this.postgres = "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+
+    // Вхождение в список одним параметром-массивом вместо IN с параметром на каждый элемент: текст запроса
+    // и его план не зависят от длины списка, а тысячи uri не упираются в предел числа параметров драйвера
+    public String anyOf(String column, String param) {
+        return column + " = any(:" + param + ")";
+    }
+
+    public SqlArrayValue arrayOf(List<String> values) {
+        return new SqlArrayValue("varchar", values.toArray());
+    }
+
+    // Номер интервала длиной :step секунд от :start, в который попадает время из column
+    public String bucketIndex(String column) {
+        if (postgres) {
+            return "floor(extract(epoch from (" + column + " - cast(:start as timestamp))) / :step)";
+        }
+        return "floor(datediff(second, cast(:start as timestamp), " + column + ") / cast(:step as double precision))";
+    }
+
+    public String insertIgnoring(String table, String column) {
+        if (postgres) {
+            return "insert into " + table + "(" + column + ") values (?) on conflict (" + column + ") do nothing";
+        }
+        return "merge into " + table + "(" + column + ") key (" + column + ") values (?)";
+    }
+
+    // Вставка строки, только если ключа ещё нет: ON CONFLICT DO NOTHING для PostgreSQL, MERGE без ветки matched для H2
+    public String insertIgnoring(String table, String[] keyColumns, String[] keyTypes, String valueColumn,
+                                 String valueType) {
+        String keys = String.join(", ", keyColumns);
+        if (postgres) {
+            return "insert into " + table + "(" + keys + ", " + valueColumn + ") values (" +
+                    "?, ".repeat(keyColumns.length) + "?) on conflict (" + keys + ") do nothing";
+        }
+        StringBuilder params = new StringBuilder();
+        StringBuilder on = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            params.append("cast(? as ").append(keyTypes[i]).append("), ");
+            on.append(i == 0 ? "" : " and ").append("t.").append(keyColumns[i]).append(" = s.").append(keyColumns[i]);
+            values.append("s.").append(keyColumns[i]).append(", ");
+        }
+        return "merge into " + table + " t using (select " + params + "cast(? as " + valueType + ")) s(" + keys +
+                ", " + valueColumn + ") on " + on + " when not matched then insert (" + keys + ", " + valueColumn +
+                ") values (" + values + "s." + valueColumn + ")";
+    }
+
+    // Атомарное "прибавить или вставить": ON CONFLICT для PostgreSQL, стандартный MERGE для H2
+    public String upsertAdding(String table, String[] keyColumns, String[] keyTypes, String counterColumn) {
+        String keys = String.join(", ", keyColumns);
+        if (postgres) {
+            return "insert into " + table + "(" + keys + ", " + counterColumn + ") values (" +
+                    "?, ".repeat(keyColumns.length) + "?) on conflict (" + keys + ") do update set " +
+                    counterColumn + " = " + table + "." + counterColumn + " + excluded." + counterColumn;
+        }
+        StringBuilder params = new StringBuilder();
+        StringBuilder on = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            params.append("cast(? as ").append(keyTypes[i]).append("), ");
+            on.append(i == 0 ? "" : " and ").append("t.").append(keyColumns[i]).append(" = s.").append(keyColumns[i]);
+            values.append("s.").append(keyColumns[i]).append(", ");
+        }
+        return "merge into " + table + " t using (select " + params + "cast(? as bigint)) s(" + keys + ", " +
+                counterColumn + ") on " + on + " when matched then update set " + counterColumn + " = t." +
+                counterColumn + " + s." + counterColumn + " when not matched then insert (" + keys + ", " +
+                counterColumn + ") values (" + values + "s." + counterColumn + ")";
+    }
+
+    public String upsertReplacing(String table, String[] keyColumns, String[] keyTypes, String valueColumn,
+                                  String valueType) {
+        String keys = String.join(", ", keyColumns);
+        if (postgres) {
+            return "insert into " + table + "(" + keys + ", " + valueColumn + ") values (" +
+                    "?, ".repeat(keyColumns.length) + "?) on conflict (" + keys + ") do update set " +
+                    valueColumn + " = excluded." + valueColumn;
+        }
+        StringBuilder params = new StringBuilder();
+        for (String keyType : keyTypes) {
+            params.append("cast(? as ").append(keyType).append("), ");
+        }
+        return "merge into " + table + "(" + keys + ", " + valueColumn + ") key (" + keys + ") select " + params +
+                "cast(? as " + valueType + ")";
+    }
+}
@@ -0,0 +1,162 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
+import ru.practicum.ewm.stats.server.model.HistogramPoint;
+import ru.practicum.ewm.stats.server.model.TimeSegment;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Выборки статистики через курсор: строки читаются порциями по fetch-size, сортировка и limit
+// выполняются в БД. PostgreSQL держит курсор только внутри транзакции, поэтому поток нужно
+// читать и закрывать в ней же
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class StatsCursorRepository {
+    private static final RowMapper<StatsDto> STATS_MAPPER = (rs, rowNum) ->
+            new StatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"));
+
+    private static final RowMapper<HistogramPoint> HISTOGRAM_MAPPER = (rs, rowNum) ->
+            new HistogramPoint(rs.getString("app"), rs.getString("uri"), rs.getLong("idx"), rs.getLong("hits"));
+
+    private final NamedParameterJdbcTemplate cursorTemplate;
+    private final SqlDialect sqlDialect;
+
+    public StatsCursorRepository(DataSource dataSource, SqlDialect sqlDialect,
+                                 @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        this.cursorTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.sqlDialect = sqlDialect;
+    }
+
+    public Stream<StatsDto> streamRaw(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                      StatsOrder order, Integer limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+        String sql = "select a.name as app, u.name as uri, r.hits from (select app_id, uri_id, " +
+                (unique ? "count(distinct ip)" : "count(*)") + " as hits from endpoint_hit " +
+                "where created_date >= :start and created_date <= :end";
+        if (!uris.isEmpty()) {
+            sql += " and uri_id in (select uri_id from hit_uri where " + sqlDialect.anyOf("name", "uris") + ")";
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        sql += " group by app_id, uri_id) r " +
+                "join hit_app a on a.app_id = r.app_id join hit_uri u on u.uri_id = r.uri_id";
+        return cursorTemplate.queryForStream(withOrder(sql, order, limit, params), params, STATS_MAPPER);
+    }
+
+    // Хиты за полуинтервал [from, to), как у сегментов плана окна; результат среза невелик и читается целиком
+    public List<StatsDto> getRawInRange(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "select a.name as app, u.name as uri, r.hits from (select app_id, uri_id, count(*) as hits " +
+                "from endpoint_hit where created_date >= :from and created_date < :to";
+        if (!uris.isEmpty()) {
+            sql += " and uri_id in (select uri_id from hit_uri where " + sqlDialect.anyOf("name", "uris") + ")";
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        sql += " group by app_id, uri_id) r " +
+                "join hit_app a on a.app_id = r.app_id join hit_uri u on u.uri_id = r.uri_id";
+        return cursorTemplate.query(sql, params, STATS_MAPPER);
+    }
+
+    // Сегменты плана окна объединяются в один запрос: агрегаты по бакетам и сырые хиты на краях
+    public Stream<StatsDto> streamRollups(List<TimeSegment> segments, List<String> uris, StatsOrder order,
+                                          Integer limit) {
+        if (segments.isEmpty()) {
+            return Stream.empty();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder union = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            TimeSegment segment = segments.get(i);
+            params.addValue("from" + i, segment.from());
+            params.addValue("to" + i, segment.to());
+            if (i > 0) {
+                union.append(" union all ");
+            }
+            if (segment.isRaw()) {
+                union.append("select a.name as app, u.name as uri, count(*) as hits from endpoint_hit h ")
+                        .append("join hit_app a on a.app_id = h.app_id join hit_uri u on u.uri_id = h.uri_id ")
+                        .append("where h.created_date >= :from").append(i)
+                        .append(" and h.created_date < :to").append(i)
+                        .append(uris.isEmpty() ? "" : " and " + sqlDialect.anyOf("u.name", "uris"))
+                        .append(" group by a.name, u.name");
+            } else {
+                union.append("select app, uri, hits from ").append(segment.granularity().getTable())
+                        .append(" where bucket >= :from").append(i).append(" and bucket < :to").append(i)
+                        .append(uris.isEmpty() ? "" : " and " + sqlDialect.anyOf("uri", "uris"));
+            }
+        }
+        if (!uris.isEmpty()) {
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        String sql = "select app, uri, sum(hits) as hits from (" + union + ") t group by app, uri";
+        return cursorTemplate.queryForStream(withOrder(sql, order, limit, params), params, STATS_MAPPER);
+    }
+
+    // Гистограмма одним запросом: номер интервала считается в БД для сырых хитов и для начала бакета агрегата,
+    // бакеты сегментов плана целиком лежат в одном интервале. Точки упорядочены по app, uri и интервалу
+    public Stream<HistogramPoint> streamHistogram(List<TimeSegment> segments, LocalDateTime start, long stepSeconds,
+                                                  List<String> uris, boolean unique) {
+        if (segments.isEmpty()) {
+            return Stream.empty();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("step", stepSeconds);
+        StringBuilder union = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            TimeSegment segment = segments.get(i);
+            params.addValue("from" + i, segment.from());
+            params.addValue("to" + i, segment.to());
+            if (i > 0) {
+                union.append(" union all ");
+            }
+            if (segment.isRaw()) {
+                union.append("select a.name as app, u.name as uri, r.idx, r.hits from (select app_id, uri_id, idx, ")
+                        .append(unique ? "count(distinct ip)" : "count(*)").append(" as hits from (")
+                        .append("select app_id, uri_id, ip, ").append(sqlDialect.bucketIndex("created_date"))
+                        .append(" as idx from endpoint_hit where created_date >= :from").append(i)
+                        .append(" and created_date < :to").append(i)
+                        .append(uris.isEmpty() ? "" : " and uri_id in (select uri_id from hit_uri where "
+                                + sqlDialect.anyOf("name", "uris") + ")")
+                        .append(") e group by app_id, uri_id, idx) r ")
+                        .append("join hit_app a on a.app_id = r.app_id join hit_uri u on u.uri_id = r.uri_id");
+            } else {
+                union.append("select app, uri, ").append(sqlDialect.bucketIndex("bucket")).append(" as idx, hits from ")
+                        .append(segment.granularity().getTable())
+                        .append(" where bucket >= :from").append(i).append(" and bucket < :to").append(i)
+                        .append(uris.isEmpty() ? "" : " and " + sqlDialect.anyOf("uri", "uris"));
+            }
+        }
+        if (!uris.isEmpty()) {
+            params.addValue("uris", sqlDialect.arrayOf(uris));
+        }
+        String sql = "select app, uri, idx, sum(hits) as hits from (" + union + ") t group by app, uri, idx " +
+                "order by app, uri, idx";
+        return cursorTemplate.queryForStream(sql, params, HISTOGRAM_MAPPER);
+    }
+
+    private static String withOrder(String sql, StatsOrder order, Integer limit, MapSqlParameterSource params) {
+        String result = "select * from (" + sql + ") s order by " + order.getOrderBy();
+        if (limit != null) {
+            result += " limit :limit";
+            params.addValue("limit", limit);
+        }
+        return result;
+    }
+}
@@ -4,37 +4,22 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.practicum.ewm.stats.dto.StatsDto;
-import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.StoredHit;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
+public interface StatsRepository extends JpaRepository<StoredHit, Long> {
 
-    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(r.app, r.uri, count(distinct(r.ip))) " +
-            "from EndpointHit AS r " +
-            "where r.createdDate >= :start AND r.createdDate <= :end AND uri in (:uris) " +
-            "group by r.app, r.uri")
-    List<StatsDto> getStatsByUriWithUniqueIp(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
-                                             @Param("uris") List<String> uris);
-
-    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(r.app, r.uri, count(distinct(r.ip))) " +
-            "from EndpointHit AS r " +
+    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(a.name, u.name, count(distinct(r.ip))) " +
+            "from StoredHit AS r join r.app AS a join r.uri AS u " +
             "where r.createdDate >= :start AND r.createdDate <= :end " +
-            "group by r.app, r.uri")
+            "group by a.id, a.name, u.id, u.name")
     List<StatsDto> getStatsWithUniqueIp(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(r.app, r.uri, count(r)) " +
-            "from EndpointHit AS r " +
-            "where r.createdDate >= :start AND r.createdDate <= :end AND uri in (:uris) " +
-            "group by r.app, r.uri " +
-            "order by count(r) desc")
-    List<StatsDto> getStatsByUri(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
-                                 @Param("uris") List<String> uris);
-
-    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(r.app, r.uri, count(r)) " +
-            "from EndpointHit AS r " +
+    @Query("select new ru.practicum.ewm.stats.dto.StatsDto(a.name, u.name, count(r)) " +
+            "from StoredHit AS r join r.app AS a join r.uri AS u " +
             "where r.createdDate >= :start AND r.createdDate <= :end " +
-            "group by r.app, r.uri")
+            "group by a.id, a.name, u.id, u.name")
     List<StatsDto> getStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
@@ -0,0 +1,83 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.stats.server.model.HitTotal;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class TotalsRepository {
+    private static final String UPSERT_POSTGRES = "insert into hit_total(app, uri, hits, first_hit, last_hit) " +
+            "values (?, ?, ?, ?, ?) on conflict (app, uri) do update set hits = hit_total.hits + excluded.hits, " +
+            "first_hit = least(hit_total.first_hit, excluded.first_hit), " +
+            "last_hit = greatest(hit_total.last_hit, excluded.last_hit)";
+    private static final String UPSERT_H2 = "merge into hit_total t using (select cast(? as varchar), " +
+            "cast(? as varchar), cast(? as bigint), cast(? as timestamp), cast(? as timestamp)) " +
+            "s(app, uri, hits, first_hit, last_hit) on t.app = s.app and t.uri = s.uri " +
+            "when matched then update set hits = t.hits + s.hits, first_hit = least(t.first_hit, s.first_hit), " +
+            "last_hit = greatest(t.last_hit, s.last_hit) " +
+            "when not matched then insert (app, uri, hits, first_hit, last_hit) " +
+            "values (s.app, s.uri, s.hits, s.first_hit, s.last_hit)";
+    private static final RowMapper<HitTotal> HIT_TOTAL_MAPPER = (rs, rowNum) -> new HitTotal(rs.getString("app"),
+            rs.getString("uri"), rs.getLong("hits"), rs.getObject("first_hit", LocalDateTime.class),
+            rs.getObject("last_hit", LocalDateTime.class));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final String upsert;
+
+    public TotalsRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.upsert = sqlDialect.isPostgres() ? UPSERT_POSTGRES : UPSERT_H2;
+    }
+
+    public void increment(List<HitTotal> deltas) {
+        jdbcTemplate.batchUpdate(upsert, deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.app());
+            ps.setString(2, delta.uri());
+            ps.setLong(3, delta.hits());
+            ps.setTimestamp(4, Timestamp.valueOf(delta.firstHit()));
+            ps.setTimestamp(5, Timestamp.valueOf(delta.lastHit()));
+        });
+    }
+
+    public List<HitTotal> find(List<String> uris) {
+        if (uris.isEmpty()) {
+            return jdbcTemplate.query("select app, uri, hits, first_hit, last_hit from hit_total", HIT_TOTAL_MAPPER);
+        }
+        return namedJdbcTemplate.query("select app, uri, hits, first_hit, last_hit from hit_total " +
+                "where " + sqlDialect.anyOf("uri", "uris"), Map.of("uris", sqlDialect.arrayOf(uris)),
+                HIT_TOTAL_MAPPER);
+    }
+
+    public void rebuildFromRaw() {
+        jdbcTemplate.update("delete from hit_total");
+        jdbcTemplate.update("insert into hit_total(app, uri, hits, first_hit, last_hit) " +
+                "select a.name, u.name, r.hits, r.first_hit, r.last_hit from (" +
+                "select app_id, uri_id, count(*) as hits, min(created_date) as first_hit, " +
+                "max(created_date) as last_hit from endpoint_hit group by app_id, uri_id) r " +
+                "join hit_app a on a.app_id = r.app_id join hit_uri u on u.uri_id = r.uri_id");
+    }
+
+    // Есть ли uri с хитами вне [start, end]: проверка останавливается на первой такой строке
+    public boolean hasHitsOutside(LocalDateTime start, LocalDateTime end) {
+        return !jdbcTemplate.queryForList("select 1 from hit_total where first_hit < ? or last_hit > ? limit 1",
+                Integer.class, start, end).isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("select 1 from hit_total limit 1", Integer.class).isEmpty();
+    }
+}
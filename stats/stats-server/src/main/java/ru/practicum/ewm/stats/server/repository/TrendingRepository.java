@@ -0,0 +1,72 @@
+package ru.practicum.ewm.stats.server.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+
+// Снимки счётов трендов, у каждого экземпляра сервиса свои строки
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+public class TrendingRepository {
+    private static final String[] KEY_COLUMNS = {"instance", "half_life_seconds", "app", "uri"};
+    private static final String[] KEY_TYPES = {"varchar", "bigint", "varchar", "varchar"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsert;
+
+    public TrendingRepository(JdbcTemplate jdbcTemplate, SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsert = sqlDialect.upsertReplacing("hit_trending_snapshot", KEY_COLUMNS, KEY_TYPES, "log_score",
+                "double precision");
+    }
+
+    @Transactional
+    public void replace(String instance, long halfLifeSeconds, List<Map.Entry<AppUri, Double>> changed,
+                        List<AppUri> deleted) {
+        jdbcTemplate.batchUpdate(upsert, changed, changed.size(), (ps, score) -> {
+            ps.setString(1, instance);
+            ps.setLong(2, halfLifeSeconds);
+            ps.setString(3, score.getKey().app());
+            ps.setString(4, score.getKey().uri());
+            ps.setDouble(5, score.getValue());
+        });
+        jdbcTemplate.batchUpdate("delete from hit_trending_snapshot " +
+                        "where instance = ? and half_life_seconds = ? and app = ? and uri = ?",
+                deleted, deleted.size(), (ps, key) -> {
+                    ps.setString(1, instance);
+                    ps.setLong(2, halfLifeSeconds);
+                    ps.setString(3, key.app());
+                    ps.setString(4, key.uri());
+                });
+    }
+
+    public void forEachOwn(String instance, long halfLifeSeconds, ObjDoubleConsumer<AppUri> consumer) {
+        jdbcTemplate.query("select app, uri, log_score from hit_trending_snapshot " +
+                        "where instance = ? and half_life_seconds = ?",
+                (RowCallbackHandler) rs -> consumer.accept(new AppUri(rs.getString("app"), rs.getString("uri")),
+                        rs.getDouble("log_score")), instance, halfLifeSeconds);
+    }
+
+    public void forEachOther(String instance, long halfLifeSeconds, ObjDoubleConsumer<AppUri> consumer) {
+        jdbcTemplate.query("select app, uri, log_score from hit_trending_snapshot " +
+                        "where instance <> ? and half_life_seconds = ?",
+                (RowCallbackHandler) rs -> consumer.accept(new AppUri(rs.getString("app"), rs.getString("uri")),
+                        rs.getDouble("log_score")), instance, halfLifeSeconds);
+    }
+
+    public boolean hasSnapshot(String instance) {
+        return !jdbcTemplate.queryForList("select 1 from hit_trending_snapshot where instance = ? limit 1",
+                Integer.class, instance).isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("select 1 from hit_trending_snapshot limit 1", Integer.class).isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.ewm.stats.server.segment;
+
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарь пар (app, uri) сегментного хранилища. Id — порядковый номер записи в журнале keys.log,
+// недописанная последняя запись после сбоя отбрасывается
+public class KeyDictionary implements Closeable {
+    private final Map<AppUri, Integer> ids = new HashMap<>();
+    private final List<AppUri> keys = new ArrayList<>();
+    private final FileOutputStream file;
+    private final DataOutputStream log;
+
+    public KeyDictionary(Path path) throws IOException {
+        long valid = 0;
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    AppUri key = new AppUri(in.readUTF(), in.readUTF());
+                    ids.put(key, keys.size());
+                    keys.add(key);
+                    valid += 4 + utfLength(key.app()) + utfLength(key.uri());
+                }
+            } catch (EOFException e) {
+                // конец журнала
+            }
+            try (var channel = Files.newByteChannel(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.log = new DataOutputStream(new BufferedOutputStream(this.file));
+    }
+
+    public synchronized int idOf(AppUri key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        try {
+            log.writeUTF(key.app());
+            log.writeUTF(key.uri());
+            log.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать ключ сегментного хранилища", e);
+        }
+        ids.put(key, keys.size());
+        keys.add(key);
+        return keys.size() - 1;
+    }
+
+    public synchronized List<AppUri> snapshot() {
+        return List.copyOf(keys);
+    }
+
+    public synchronized List<AppUri> snapshot(int from) {
+        return List.copyOf(keys.subList(Math.min(from, keys.size()), keys.size()));
+    }
+
+    public synchronized void force() throws IOException {
+        file.getChannel().force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,241 @@
+package ru.practicum.ewm.stats.server.segment;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Файл сегмента: заголовок и три колонки фиксированной ёмкости — время (мс эпохи), id ключа (app, uri)
+// и ip как два long. Строки дописываются в конец, число строк в заголовке пишется после данных,
+// поэтому после сбоя читается только целиком записанный префикс. Отображение в память держит только
+// сегмент, в который идёт запись; закрытый сегмент читается из файла порциями при каждом запросе
+public class Segment {
+    private static final int MAGIC = 0x53454731;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+    private static final int ROW_SIZE = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+    private static final int SCAN_CHUNK = 8192;
+
+    private final Path path;
+    private final long partition;
+    private final int capacity;
+    private final int keysOffset;
+    private final int ipHighOffset;
+    private final int ipLowOffset;
+    private volatile FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private volatile int count;
+    private volatile long minTime;
+    private volatile long maxTime;
+
+    private Segment(Path path, long partition, int capacity) {
+        this.path = path;
+        this.partition = partition;
+        this.capacity = capacity;
+        this.keysOffset = HEADER_SIZE + Long.BYTES * capacity;
+        this.ipHighOffset = keysOffset + Integer.BYTES * capacity;
+        this.ipLowOffset = ipHighOffset + Long.BYTES * capacity;
+    }
+
+    public static Segment create(Path path, long partition, int capacity) {
+        if ((long) HEADER_SIZE + (long) ROW_SIZE * capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ёмкость сегмента слишком велика: " + capacity);
+        }
+        Segment segment = new Segment(path, partition, capacity);
+        segment.map(StandardOpenOption.CREATE_NEW);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, capacity);
+        segment.buffer.putLong(MIN_TIME_OFFSET, Long.MAX_VALUE);
+        segment.buffer.putLong(MAX_TIME_OFFSET, Long.MIN_VALUE);
+        segment.minTime = Long.MAX_VALUE;
+        segment.maxTime = Long.MIN_VALUE;
+        return segment;
+    }
+
+    // Читает заголовок сегмента, не отображая его в память
+    public static Segment open(Path path, long partition) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel, header, 0, HEADER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Файл не является сегментом хитов: " + path);
+        }
+        Segment segment = new Segment(path, partition, header.getInt(4));
+        segment.count = header.getInt(COUNT_OFFSET);
+        segment.minTime = header.getLong(MIN_TIME_OFFSET);
+        segment.maxTime = header.getLong(MAX_TIME_OFFSET);
+        return segment;
+    }
+
+    // Открывает сегмент для дозаписи. Вызывается только под блокировкой хранилища
+    void reopen() {
+        if (buffer == null) {
+            map();
+        }
+    }
+
+    // Сбрасывает сегмент на диск и закрывает файл; дальше сегмент читается из файла.
+    // Вызывается только под блокировкой хранилища
+    void seal() {
+        MappedByteBuffer mapped = buffer;
+        if (mapped == null) {
+            return;
+        }
+        mapped.force();
+        buffer = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть сегмент " + path, e);
+        }
+        channel = null;
+    }
+
+    private void map(StandardOpenOption... extra) {
+        try {
+            FileChannel file = FileChannel.open(path, concat(extra));
+            try {
+                buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) ROW_SIZE * capacity);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            channel = file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StandardOpenOption[] concat(StandardOpenOption... extra) {
+        StandardOpenOption[] options = new StandardOpenOption[extra.length + 2];
+        options[0] = StandardOpenOption.READ;
+        options[1] = StandardOpenOption.WRITE;
+        System.arraycopy(extra, 0, options, 2, extra.length);
+        return options;
+    }
+
+    // Вызывается только под блокировкой хранилища
+    boolean append(long time, int key, long ipHigh, long ipLow) {
+        int row = count;
+        if (row == capacity) {
+            return false;
+        }
+        MappedByteBuffer mapped = buffer;
+        mapped.putLong(HEADER_SIZE + Long.BYTES * row, time);
+        mapped.putInt(keysOffset + Integer.BYTES * row, key);
+        mapped.putLong(ipHighOffset + Long.BYTES * row, ipHigh);
+        mapped.putLong(ipLowOffset + Long.BYTES * row, ipLow);
+        if (time < minTime) {
+            minTime = time;
+            mapped.putLong(MIN_TIME_OFFSET, time);
+        }
+        if (time > maxTime) {
+            maxTime = time;
+            mapped.putLong(MAX_TIME_OFFSET, time);
+        }
+        mapped.putInt(COUNT_OFFSET, row + 1);
+        count = row + 1;
+        return true;
+    }
+
+    public boolean overlaps(long from, long to) {
+        return count > 0 && minTime <= to && maxTime >= from;
+    }
+
+    public void scan(long from, long to, RowVisitor visitor) {
+        int rows = count;
+        MappedByteBuffer mapped = buffer;
+        if (mapped == null) {
+            scanFile(rows, from, to, visitor);
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            long time = mapped.getLong(HEADER_SIZE + Long.BYTES * row);
+            if (time >= from && time <= to) {
+                visitor.visit(time, mapped.getInt(keysOffset + Integer.BYTES * row),
+                        mapped.getLong(ipHighOffset + Long.BYTES * row),
+                        mapped.getLong(ipLowOffset + Long.BYTES * row));
+            }
+        }
+    }
+
+    // Колонки читаются порциями по SCAN_CHUNK строк, порция без подходящего времени дальше не читается
+    private void scanFile(int rows, long from, long to, RowVisitor visitor) {
+        ByteBuffer times = ByteBuffer.allocate(Long.BYTES * SCAN_CHUNK);
+        ByteBuffer keys = ByteBuffer.allocate(Integer.BYTES * SCAN_CHUNK);
+        ByteBuffer ipHighs = ByteBuffer.allocate(Long.BYTES * SCAN_CHUNK);
+        ByteBuffer ipLows = ByteBuffer.allocate(Long.BYTES * SCAN_CHUNK);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int first = 0; first < rows; first += SCAN_CHUNK) {
+                int chunk = Math.min(SCAN_CHUNK, rows - first);
+                read(file, times, HEADER_SIZE + (long) Long.BYTES * first, Long.BYTES * chunk);
+                boolean loaded = false;
+                for (int row = 0; row < chunk; row++) {
+                    long time = times.getLong(Long.BYTES * row);
+                    if (time < from || time > to) {
+                        continue;
+                    }
+                    if (!loaded) {
+                        read(file, keys, keysOffset + (long) Integer.BYTES * first, Integer.BYTES * chunk);
+                        read(file, ipHighs, ipHighOffset + (long) Long.BYTES * first, Long.BYTES * chunk);
+                        read(file, ipLows, ipLowOffset + (long) Long.BYTES * first, Long.BYTES * chunk);
+                        loaded = true;
+                    }
+                    visitor.visit(time, keys.getInt(Integer.BYTES * row), ipHighs.getLong(Long.BYTES * row),
+                            ipLows.getLong(Long.BYTES * row));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // сегмент удалён по сроку хранения, пока запрос шёл по списку сегментов
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент " + path, e);
+        }
+    }
+
+    private static void read(FileChannel file, ByteBuffer target, long position, int length) throws IOException {
+        target.clear().limit(length);
+        while (target.hasRemaining()) {
+            if (file.read(target, position + target.position()) < 0) {
+                throw new EOFException("Сегмент обрезан: " + file);
+            }
+        }
+    }
+
+    public long getPartition() {
+        return partition;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void force() {
+        MappedByteBuffer mapped = buffer;
+        if (mapped != null) {
+            mapped.force();
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(long time, int key, long ipHigh, long ipLow);
+    }
+}
@@ -0,0 +1,328 @@
+package ru.practicum.ewm.stats.server.segment;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.ewm.stats.server.mapper.IpCodec;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.HistogramPoint;
+import ru.practicum.ewm.stats.server.model.RollupKey;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+
+// Хранилище хитов в сегментных файлах <партиция>-<номер>.seg: хит попадает в открытый сегмент
+// своей временной партиции, заполненный сегмент сменяется новым. Заполненный сегмент и сегмент партиции,
+// закончившейся больше партиции назад, закрываются: открытыми остаются файлы только текущих партиций.
+// Запрос читает только сегменты, чей интервал [minTime, maxTime] пересекается с окном, параллельно
+// в общем ForkJoinPool
+@Slf4j
+public class SegmentStore implements Closeable {
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+    private static final long RAW_IP_PREFIX = 0x0100L << 48;
+
+    private final Path directory;
+    private final long partitionMillis;
+    private final int capacity;
+    private final KeyDictionary dictionary;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<Long, Segment> active = new HashMap<>();
+    private long nextSequence;
+
+    public SegmentStore(Path directory, Duration partition, int capacity) throws IOException {
+        this.directory = directory;
+        this.partitionMillis = partition.toMillis();
+        this.capacity = capacity;
+        Files.createDirectories(directory);
+        this.dictionary = new KeyDictionary(directory.resolve("keys.log"));
+        long openFrom = openFrom(System.currentTimeMillis());
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .forEach(file -> load(file, openFrom));
+        }
+        log.info("Открыто сегментное хранилище {}: сегментов {}", directory, segments.size());
+    }
+
+    private void load(Path file, long openFrom) {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("-");
+        long partition = Long.parseLong(parts[0]);
+        nextSequence = Math.max(nextSequence, Long.parseLong(parts[1]) + 1);
+        Segment segment = Segment.open(file, partition);
+        segments.add(segment);
+        if (!segment.isFull() && partition >= openFrom) {
+            segment.reopen();
+            Segment previous = active.put(partition, segment);
+            if (previous != null) {
+                previous.seal();
+            }
+        }
+    }
+
+    public synchronized void append(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            long time = toMillis(hit.getCreatedDate());
+            long partition = Math.floorDiv(time, partitionMillis);
+            int key = dictionary.idOf(new AppUri(hit.getApp(), hit.getUri()));
+            ByteBuffer ip = toIpv6(IpCodec.encode(hit.getIp()));
+            long ipHigh = ip.getLong(0);
+            long ipLow = ip.getLong(Long.BYTES);
+            Segment segment = active.get(partition);
+            if (segment == null || !segment.append(time, key, ipHigh, ipLow)) {
+                segment = createSegment(partition);
+                segment.append(time, key, ipHigh, ipLow);
+            }
+        }
+    }
+
+    public Map<AppUri, Long> count(LocalDateTime start, LocalDateTime end, Set<String> uris) {
+        List<AppUri> keys = dictionary.snapshot();
+        boolean[] allowed = allowedKeys(keys, uris);
+        long from = toMillis(start);
+        long to = toMillis(end);
+        long[] hits = segments.parallelStream()
+                .filter(segment -> segment.overlaps(from, to))
+                .map(segment -> {
+                    long[] partial = new long[keys.size()];
+                    segment.scan(from, to, (time, key, ipHigh, ipLow) -> {
+                        if (key < allowed.length && allowed[key]) {
+                            partial[key]++;
+                        }
+                    });
+                    return partial;
+                })
+                .reduce(new long[keys.size()], (a, b) -> {
+                    long[] sum = new long[a.length];
+                    Arrays.setAll(sum, i -> a[i] + b[i]);
+                    return sum;
+                });
+        Map<AppUri, Long> result = new HashMap<>();
+        for (int key = 0; key < hits.length; key++) {
+            if (hits[key] > 0) {
+                result.put(keys.get(key), hits[key]);
+            }
+        }
+        return result;
+    }
+
+    public Map<AppUri, Long> countUnique(LocalDateTime start, LocalDateTime end, Set<String> uris) {
+        List<AppUri> keys = dictionary.snapshot();
+        boolean[] allowed = allowedKeys(keys, uris);
+        long from = toMillis(start);
+        long to = toMillis(end);
+        Map<Integer, Set<Ip>> ips = segments.parallelStream()
+                .filter(segment -> segment.overlaps(from, to))
+                .map(segment -> {
+                    Map<Integer, Set<Ip>> partial = new HashMap<>();
+                    segment.scan(from, to, (time, key, ipHigh, ipLow) -> {
+                        if (key < allowed.length && allowed[key]) {
+                            partial.computeIfAbsent(key, k -> new HashSet<>()).add(new Ip(ipHigh, ipLow));
+                        }
+                    });
+                    return partial;
+                })
+                .reduce(new HashMap<>(), SegmentStore::mergeIps);
+        Map<AppUri, Long> result = new HashMap<>();
+        ips.forEach((key, keyIps) -> result.put(keys.get(key), (long) keyIps.size()));
+        return result;
+    }
+
+    // Точки гистограммы по полуинтервалу [start, end), упорядоченные по app, uri и номеру интервала.
+    // Точка адресуется числом ключ·(число интервалов) + интервал
+    public List<HistogramPoint> histogram(LocalDateTime start, LocalDateTime end, Duration step, Set<String> uris,
+                                          boolean unique) {
+        List<AppUri> keys = dictionary.snapshot();
+        boolean[] allowed = allowedKeys(keys, uris);
+        long from = toMillis(start);
+        long to = toMillis(end) - 1;
+        long stepMillis = step.toMillis();
+        long buckets = (to - from) / stepMillis + 1;
+        Stream<Segment> overlapping = segments.parallelStream().filter(segment -> segment.overlaps(from, to));
+        Map<Long, Long> hits = new HashMap<>();
+        if (unique) {
+            overlapping.map(segment -> {
+                        Map<Long, Set<Ip>> partial = new HashMap<>();
+                        segment.scan(from, to, (time, key, ipHigh, ipLow) -> {
+                            if (key < allowed.length && allowed[key]) {
+                                partial.computeIfAbsent(key * buckets + (time - from) / stepMillis,
+                                        point -> new HashSet<>()).add(new Ip(ipHigh, ipLow));
+                            }
+                        });
+                        return partial;
+                    })
+                    .reduce(new HashMap<>(), SegmentStore::mergeIps)
+                    .forEach((point, pointIps) -> hits.put(point, (long) pointIps.size()));
+        } else {
+            overlapping.map(segment -> {
+                        Map<Long, Long> partial = new HashMap<>();
+                        segment.scan(from, to, (time, key, ipHigh, ipLow) -> {
+                            if (key < allowed.length && allowed[key]) {
+                                partial.merge(key * buckets + (time - from) / stepMillis, 1L, Long::sum);
+                            }
+                        });
+                        return partial;
+                    })
+                    .forEachOrdered(partial -> partial.forEach((point, count) -> hits.merge(point, count, Long::sum)));
+        }
+        return hits.entrySet().stream()
+                .map(entry -> {
+                    AppUri key = keys.get((int) (entry.getKey() / buckets));
+                    return new HistogramPoint(key.app(), key.uri(), entry.getKey() % buckets, entry.getValue());
+                })
+                .sorted(Comparator.comparing(HistogramPoint::app).thenComparing(HistogramPoint::uri)
+                        .thenComparingLong(HistogramPoint::index))
+                .toList();
+    }
+
+    // Хиты полуинтервала [start, end), сложенные по ключу и бакету длины bucket, отсчитанному от эпохи
+    public void forEachBucket(LocalDateTime start, LocalDateTime end, Duration bucket,
+                              ObjLongConsumer<RollupKey> consumer) {
+        List<AppUri> keys = dictionary.snapshot();
+        long from = toMillis(start);
+        long to = toMillis(end) - 1;
+        long bucketMillis = bucket.toMillis();
+        long firstBucket = Math.floorDiv(from, bucketMillis);
+        long buckets = Math.floorDiv(to, bucketMillis) - firstBucket + 1;
+        Map<Long, Long> hits = new HashMap<>();
+        segments.parallelStream()
+                .filter(segment -> segment.overlaps(from, to))
+                .map(segment -> {
+                    Map<Long, Long> partial = new HashMap<>();
+                    segment.scan(from, to, (time, key, ipHigh, ipLow) -> partial.merge(
+                            key * buckets + Math.floorDiv(time, bucketMillis) - firstBucket, 1L, Long::sum));
+                    return partial;
+                })
+                .forEachOrdered(partial -> partial.forEach((point, count) -> hits.merge(point, count, Long::sum)));
+        hits.forEach((point, count) -> {
+            AppUri key = keys.get((int) (point / buckets));
+            long bucketStart = (firstBucket + point % buckets) * bucketMillis;
+            consumer.accept(new RollupKey(key.app(), key.uri(),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(bucketStart), ZoneOffset.UTC)), count);
+        });
+    }
+
+    public List<AppUri> getKeys() {
+        return dictionary.snapshot();
+    }
+
+    // Ключи с номерами от from, номер ключа — его позиция в словаре
+    public List<AppUri> getKeys(int from) {
+        return dictionary.snapshot(from);
+    }
+
+    // Сбрасывает открытые сегменты на диск и закрывает сегменты закончившихся партиций
+    public synchronized void force() {
+        long openFrom = openFrom(System.currentTimeMillis());
+        Iterator<Segment> open = active.values().iterator();
+        while (open.hasNext()) {
+            Segment segment = open.next();
+            if (segment.getPartition() < openFrom) {
+                segment.seal();
+                open.remove();
+            } else {
+                segment.force();
+            }
+        }
+        try {
+            dictionary.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Удаляет закрытые сегменты, все хиты которых раньше cutoff, и возвращает их число
+    public synchronized int deleteBefore(LocalDateTime cutoff) {
+        long cutoffMillis = toMillis(cutoff);
+        List<Segment> expired = segments.stream()
+                .filter(segment -> !active.containsValue(segment) && segment.getMaxTime() < cutoffMillis)
+                .toList();
+        segments.removeAll(expired);
+        for (Segment segment : expired) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return expired.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.values().forEach(Segment::seal);
+        active.clear();
+        dictionary.close();
+        log.info("Сегментное хранилище {} закрыто", directory);
+    }
+
+    private Segment createSegment(long partition) {
+        Path file = directory.resolve(partition + "-" + nextSequence++ + SEGMENT_SUFFIX);
+        Segment segment = Segment.create(file, partition, capacity);
+        segments.add(segment);
+        Segment previous = active.put(partition, segment);
+        if (previous != null) {
+            previous.seal();
+        }
+        return segment;
+    }
+
+    // Первая партиция, сегменты которой держатся открытыми: текущая и предыдущая, куда ещё приходят
+    // опоздавшие хиты. Хит в более раннюю партицию открывает для неё новый сегмент до следующего force
+    private long openFrom(long nowMillis) {
+        return Math.floorDiv(nowMillis, partitionMillis) - 1;
+    }
+
+    private static boolean[] allowedKeys(List<AppUri> keys, Set<String> uris) {
+        boolean[] allowed = new boolean[keys.size()];
+        for (int key = 0; key < allowed.length; key++) {
+            allowed[key] = uris.isEmpty() || uris.contains(keys.get(key).uri());
+        }
+        return allowed;
+    }
+
+    private static <K> Map<K, Set<Ip>> mergeIps(Map<K, Set<Ip>> a, Map<K, Set<Ip>> b) {
+        Map<K, Set<Ip>> merged = new HashMap<>(a);
+        b.forEach((key, ips) -> merged.merge(key, ips, (x, y) -> {
+            Set<Ip> union = new HashSet<>(x);
+            union.addAll(y);
+            return union;
+        }));
+        return merged;
+    }
+
+    // Значение, не являющееся адресом, отображается в сеть 100::/64 (RFC 6666) по хешу, чтобы различаться
+    // при подсчёте уникальных
+    private static ByteBuffer toIpv6(byte[] address) {
+        ByteBuffer ip = ByteBuffer.allocate(16);
+        if (!IpCodec.isAddress(address)) {
+            ip.putLong(0, RAW_IP_PREFIX);
+            ip.putLong(Long.BYTES, UUID.nameUUIDFromBytes(address).getLeastSignificantBits());
+        } else if (address.length == 4) {
+            ip.putLong(0, 0);
+            ip.putLong(Long.BYTES, IPV4_MAPPED_PREFIX | (ByteBuffer.wrap(address).getInt() & 0xFFFFFFFFL));
+        } else {
+            ip.put(0, address);
+        }
+        return ip;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record Ip(long high, long low) {
+    }
+}
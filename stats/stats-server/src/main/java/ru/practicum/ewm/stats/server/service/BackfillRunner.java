@@ -0,0 +1,23 @@
+package ru.practicum.ewm.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class BackfillRunner implements ApplicationRunner {
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final TotalsService totalsService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rollupService.backfillIfEmpty();
+        sketchService.backfillIfEmpty();
+        totalsService.backfillIfEmpty();
+    }
+}
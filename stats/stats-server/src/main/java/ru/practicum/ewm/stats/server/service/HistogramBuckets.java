@@ -0,0 +1,53 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.validation.ValidationException;
+import lombok.experimental.UtilityClass;
+import ru.practicum.ewm.stats.dto.HistogramBucketDto;
+import ru.practicum.ewm.stats.dto.HistogramDto;
+import ru.practicum.ewm.stats.server.model.HistogramPoint;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Интервалы гистограммы: [start + i·step, start + (i + 1)·step), последний обрезается по end
+@UtilityClass
+public class HistogramBuckets {
+
+    public void check(LocalDateTime start, LocalDateTime end, Duration step, int maxBuckets) {
+        if (!start.isBefore(end)) {
+            throw new ValidationException("End должен быть позже start");
+        }
+        if (step.toSeconds() < 1 || step.getNano() != 0) {
+            throw new ValidationException("Step должен быть целым числом секунд, не меньше одной");
+        }
+        long seconds = Duration.between(start, end).toSeconds();
+        if ((seconds + step.toSeconds() - 1) / step.toSeconds() > maxBuckets) {
+            throw new ValidationException("Интервалов гистограммы больше " + maxBuckets + ", увеличьте step");
+        }
+    }
+
+    // Собирает упорядоченные по app, uri и номеру интервала точки в ряды, пустые интервалы не передаются
+    public void emit(Iterator<HistogramPoint> points, LocalDateTime start, Duration step,
+                     Consumer<HistogramDto> consumer) {
+        HistogramPoint first = null;
+        List<HistogramBucketDto> buckets = new ArrayList<>();
+        while (points.hasNext()) {
+            HistogramPoint point = points.next();
+            if (first != null && !(first.app().equals(point.app()) && first.uri().equals(point.uri()))) {
+                consumer.accept(new HistogramDto(first.app(), first.uri(), buckets));
+                buckets = new ArrayList<>();
+            }
+            if (buckets.isEmpty()) {
+                first = point;
+            }
+            buckets.add(new HistogramBucketDto(start.plus(step.multipliedBy(point.index())), point.hits()));
+        }
+        if (first != null) {
+            consumer.accept(new HistogramDto(first.app(), first.uri(), buckets));
+        }
+    }
+}
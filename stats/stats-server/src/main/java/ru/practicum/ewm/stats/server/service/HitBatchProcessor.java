@@ -0,0 +1,130 @@
+package ru.practicum.ewm.stats.server.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HitBatchCountDto;
+import ru.practicum.ewm.stats.dto.HitBatchResponseDto;
+import ru.practicum.ewm.stats.dto.wire.StatsWireReader;
+import ru.practicum.ewm.stats.server.mapper.IpCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Записи до ошибки разбора тела сохраняются, в ответе — сколько их принято и на чём разбор остановился
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HitBatchProcessor {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final StatsService statsService;
+
+    @Value("${stats.ingest.batch-size:500}")
+    private int batchSize;
+
+    public HitBatchResponseDto process(InputStream body, boolean wire) throws IOException {
+        if (wire) {
+            StatsWireReader reader;
+            try {
+                reader = new StatsWireReader(body);
+            } catch (IOException e) {
+                return HitBatchResponseDto.builder().batches(List.of()).error(e.getMessage()).build();
+            }
+            return process(new RecordSource() {
+                @Override
+                public boolean hasNext() throws IOException {
+                    return reader.hasNext();
+                }
+
+                @Override
+                public EndpointHitDto next() throws IOException {
+                    return reader.readHit();
+                }
+            });
+        }
+        try (MappingIterator<EndpointHitDto> records = objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            return process(new RecordSource() {
+                @Override
+                public boolean hasNext() throws IOException {
+                    return records.hasNextValue();
+                }
+
+                @Override
+                public EndpointHitDto next() throws IOException {
+                    return readRecord(records);
+                }
+            });
+        }
+    }
+
+    private HitBatchResponseDto process(RecordSource records) throws IOException {
+        List<HitBatchCountDto> batches = new ArrayList<>();
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        int rejected = 0;
+        String error = null;
+        try {
+            while (records.hasNext()) {
+                EndpointHitDto hit = records.next();
+                if (hit == null || !validator.validate(hit).isEmpty() || !IpCodec.isValid(hit.getIp())) {
+                    rejected++;
+                } else {
+                    batch.add(hit);
+                }
+                if (batch.size() + rejected >= batchSize) {
+                    batches.add(flush(batches.size(), batch, rejected));
+                    rejected = 0;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            error = e.getOriginalMessage();
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        if (!batch.isEmpty() || rejected > 0) {
+            batches.add(flush(batches.size(), batch, rejected));
+        }
+        HitBatchResponseDto result = HitBatchResponseDto.builder()
+                .accepted(batches.stream().mapToLong(HitBatchCountDto::getAccepted).sum())
+                .rejected(batches.stream().mapToLong(HitBatchCountDto::getRejected).sum())
+                .batches(batches)
+                .error(error)
+                .build();
+        if (error != null) {
+            log.debug("Разбор пакета хитов остановлен после {} записей: {}",
+                    result.getAccepted() + result.getRejected(), error);
+        }
+        return result;
+    }
+
+    private EndpointHitDto readRecord(MappingIterator<EndpointHitDto> records) throws IOException {
+        try {
+            return records.nextValue();
+        } catch (JsonMappingException e) {
+            log.debug("Отклонена запись пакета хитов: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private HitBatchCountDto flush(int index, List<EndpointHitDto> batch, int rejected) {
+        statsService.saveHits(batch);
+        HitBatchCountDto result = new HitBatchCountDto(index, batch.size(), rejected);
+        batch.clear();
+        return result;
+    }
+
+    private interface RecordSource {
+        boolean hasNext() throws IOException;
+
+        EndpointHitDto next() throws IOException;
+    }
+}
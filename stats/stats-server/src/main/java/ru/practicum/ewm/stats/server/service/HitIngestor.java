@@ -0,0 +1,265 @@
+package ru.practicum.ewm.stats.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.server.enums.IngestMode;
+import ru.practicum.ewm.stats.server.enums.OverflowPolicy;
+import ru.practicum.ewm.stats.server.exception.HitQueueOverflowException;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// В режиме ASYNC хит подтверждается при постановке в очередь. Пакет, который не удалось записать, повторяется с
+// растущей паузой, пока в очереди есть место. Если очередь заполнилась, БД отклонила пакет или сервис
+// останавливается, пакет дописывается в dead-letter-file в формате тела /hit/batch, откуда его можно отправить заново
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class HitIngestor {
+    private final HitWriter hitWriter;
+    private final HitSpooler hitSpooler;
+    private final ObjectMapper objectMapper;
+    private final IngestMode mode;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration blockTimeout;
+    private final Duration retryBackoff;
+    private final Duration retryMaxBackoff;
+    private final Path deadLetterFile;
+    private final BlockingQueue<EndpointHit> queue;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final Counter deadLetterCounter;
+    private final Timer flushTimer;
+    private volatile boolean running;
+    // при остановке после первой неудачной записи остаток очереди сразу уходит в dead-letter-file
+    private boolean spillRemaining;
+    private Thread writerThread;
+
+    public HitIngestor(HitWriter hitWriter,
+                       ObjectProvider<HitSpooler> hitSpooler,
+                       MeterRegistry meterRegistry,
+                       ObjectMapper objectMapper,
+                       @Value("${stats.ingest.mode:SYNC}") IngestMode mode,
+                       @Value("${stats.ingest.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                       @Value("${stats.ingest.queue-capacity:10000}") int queueCapacity,
+                       @Value("${stats.ingest.batch-size:500}") int batchSize,
+                       @Value("${stats.ingest.flush-interval:200ms}") Duration flushInterval,
+                       @Value("${stats.ingest.block-timeout:1s}") Duration blockTimeout,
+                       @Value("${stats.ingest.retry-backoff:200ms}") Duration retryBackoff,
+                       @Value("${stats.ingest.retry-max-backoff:5s}") Duration retryMaxBackoff,
+                       @Value("${stats.ingest.dead-letter-file:data/ingest-dead-letter.ndjson}")
+                       Path deadLetterFile) {
+        this.hitWriter = hitWriter;
+        this.hitSpooler = hitSpooler.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.mode = mode;
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.blockTimeout = blockTimeout;
+        this.retryBackoff = retryBackoff;
+        this.retryMaxBackoff = retryMaxBackoff;
+        this.deadLetterFile = deadLetterFile;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("stats.ingest.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.droppedCounter = meterRegistry.counter("stats.ingest.dropped");
+        this.rejectedCounter = meterRegistry.counter("stats.ingest.rejected");
+        this.failedCounter = meterRegistry.counter("stats.ingest.failed");
+        this.deadLetterCounter = meterRegistry.counter("stats.ingest.dead-letter");
+        this.flushTimer = meterRegistry.timer("stats.ingest.flush");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode != IngestMode.ASYNC) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drainLoop, "hit-writer");
+        writerThread.start();
+        log.info("Запущена асинхронная запись хитов: batchSize {}, flushInterval {}, overflowPolicy {}",
+                batchSize, flushInterval, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join();
+        log.info("Асинхронная запись хитов остановлена");
+    }
+
+    public void accept(EndpointHit hit) {
+        if (mode == IngestMode.SYNC) {
+            hitWriter.write(List.of(hit));
+            return;
+        }
+        if (mode == IngestMode.SPOOL) {
+            hitSpooler.append(List.of(hit));
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> offerBlocking(hit);
+            case REJECT -> {
+                if (!queue.offer(hit)) {
+                    rejectedCounter.increment();
+                    throw new HitQueueOverflowException("Очередь записи хитов переполнена");
+                }
+            }
+            case DROP -> {
+                if (!queue.offer(hit)) {
+                    droppedCounter.increment();
+                }
+            }
+        }
+    }
+
+    public void acceptBatch(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (mode == IngestMode.SPOOL) {
+            hitSpooler.append(hits);
+        } else {
+            hitWriter.write(hits);
+        }
+    }
+
+    private void offerBlocking(EndpointHit hit) {
+        try {
+            if (!queue.offer(hit, blockTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejectedCounter.increment();
+                throw new HitQueueOverflowException("Очередь записи хитов переполнена");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HitQueueOverflowException("Ожидание места в очереди записи хитов прервано");
+        }
+    }
+
+    private void drainLoop() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHit first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    EndpointHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            }
+        }
+    }
+
+    // Прерывание во время паузы не теряет пакет: он уходит в dead-letter-file, а флаг прерывания сохраняется
+    private void flush(List<EndpointHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Duration backoff = retryBackoff;
+        while (true) {
+            if (spillRemaining) {
+                spill(batch);
+                break;
+            }
+            long startNanos = System.nanoTime();
+            try {
+                hitWriter.write(batch);
+                break;
+            } catch (DataIntegrityViolationException e) {
+                failedCounter.increment(batch.size());
+                log.error("БД отклонила пакет из {} хитов, он переносится в {}", batch.size(), deadLetterFile, e);
+                spill(batch);
+                break;
+            } catch (RuntimeException e) {
+                failedCounter.increment(batch.size());
+                if (!running || queue.remainingCapacity() == 0) {
+                    log.error("Не удалось сохранить пакет из {} хитов, {}, пакет переносится в {}", batch.size(),
+                            running ? "очередь заполнена" : "сервис останавливается", deadLetterFile, e);
+                    spillRemaining = !running;
+                    spill(batch);
+                    break;
+                }
+                log.warn("Не удалось сохранить пакет из {} хитов, повтор через {}", batch.size(), backoff, e);
+            } finally {
+                flushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+            try {
+                Thread.sleep(backoff.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                spill(batch);
+                break;
+            }
+            backoff = backoff.multipliedBy(2).compareTo(retryMaxBackoff) > 0 ? retryMaxBackoff
+                    : backoff.multipliedBy(2);
+        }
+        batch.clear();
+    }
+
+    private void spill(List<EndpointHit> batch) {
+        try {
+            Path parent = deadLetterFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (Writer writer = Files.newBufferedWriter(deadLetterFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+                for (EndpointHit hit : batch) {
+                    writer.write(objectMapper.writeValueAsString(new EndpointHitDto(hit.getApp(), hit.getUri(),
+                            hit.getIp(), hit.getCreatedDate())));
+                    writer.write('\n');
+                }
+            }
+            deadLetterCounter.increment(batch.size());
+        } catch (IOException e) {
+            droppedCounter.increment(batch.size());
+            log.error("Не удалось записать {} хитов в {}, хиты потеряны", batch.size(), deadLetterFile, e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ru.practicum.ewm.stats.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.repository.SpoolCheckpointRepository;
+import ru.practicum.ewm.stats.server.spool.HitSpool;
+import ru.practicum.ewm.stats.server.spool.SpoolBatch;
+import ru.practicum.ewm.stats.server.spool.SpoolPosition;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+// Режим stats.ingest.mode=SPOOL: хит подтверждается после записи в локальный журнал, а в БД его переносит
+// отдельный поток в своём темпе. Если БД недоступна, журнал копится на диске и переносится после её возврата.
+// Пакет, нарушивший ограничения БД, переносится по одной записи, а отклонённая запись уходит в dead-letter.ndjson
+@Component
+@ConditionalOnExpression("'${stats.ingest.mode:SYNC}' == 'SPOOL' and '${stats.storage:jdbc}' == 'jdbc'")
+@Slf4j
+public class HitSpooler {
+    private static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+
+    private final HitWriter hitWriter;
+    private final SpoolCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final DataSize segmentSize;
+    private final DataSize maxSize;
+    private final boolean fsync;
+    private final String spoolId;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration retryInterval;
+    private final Counter failedCounter;
+    private final Counter deadLetterCounter;
+    private HitSpool spool;
+    private SpoolPosition position;
+    // конец пакета, который переносится по одной записи
+    private SpoolPosition isolateUntil;
+    private volatile boolean running;
+    private Thread replayThread;
+
+    public HitSpooler(HitWriter hitWriter,
+                      SpoolCheckpointRepository checkpointRepository,
+                      TransactionTemplate transactionTemplate,
+                      MeterRegistry meterRegistry,
+                      ObjectMapper objectMapper,
+                      @Value("${stats.spool.dir:data/spool}") Path directory,
+                      @Value("${stats.spool.segment-size:64MB}") DataSize segmentSize,
+                      @Value("${stats.spool.max-size:1GB}") DataSize maxSize,
+                      @Value("${stats.spool.fsync:true}") boolean fsync,
+                      @Value("${stats.spool.id:default}") String spoolId,
+                      @Value("${stats.ingest.batch-size:500}") int batchSize,
+                      @Value("${stats.spool.poll-interval:200ms}") Duration pollInterval,
+                      @Value("${stats.spool.retry-interval:5s}") Duration retryInterval) {
+        this.hitWriter = hitWriter;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.fsync = fsync;
+        this.spoolId = spoolId;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.retryInterval = retryInterval;
+        this.failedCounter = meterRegistry.counter("stats.spool.replay.failed");
+        this.deadLetterCounter = meterRegistry.counter("stats.spool.dead-letter");
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        spool = new HitSpool(directory, segmentSize.toBytes(), maxSize.toBytes(), fsync);
+        Gauge.builder("stats.spool.size", spool, HitSpool::size).baseUnit("bytes").register(meterRegistry);
+        FunctionCounter.builder("stats.spool.skipped", spool, HitSpool::getSkippedBytes).baseUnit("bytes")
+                .register(meterRegistry);
+        position = checkpointRepository.find(spoolId).orElse(spool.getStart());
+        if (position.compareTo(spool.getEnd()) > 0) {
+            log.warn("Позиция {} журнала хитов {} дальше его конца {}, переносим журнал с начала",
+                    position, spoolId, spool.getEnd());
+            position = spool.getStart();
+        }
+        running = true;
+        replayThread = new Thread(this::replayLoop, "hit-spool-replayer");
+        replayThread.start();
+        log.info("Журнал хитов {} открыт в {}, перенос в БД с позиции {}", spoolId, directory, position);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        replayThread.interrupt();
+        replayThread.join();
+        spool.close();
+        log.info("Журнал хитов {} закрыт, не перенесено байт: {}", spoolId, spool.size());
+    }
+
+    public void append(List<EndpointHit> hits) {
+        spool.append(hits);
+    }
+
+    private void replayLoop() {
+        while (running) {
+            try {
+                SpoolBatch batch = spool.read(position, isolateUntil == null ? batchSize : 1);
+                if (batch.next().equals(position)) {
+                    Thread.sleep(pollInterval.toMillis());
+                    continue;
+                }
+                try {
+                    write(batch);
+                } catch (DataIntegrityViolationException e) {
+                    if (batch.hits().size() > 1) {
+                        log.warn("БД отклонила пакет журнала хитов до позиции {}, переносим его по одной записи",
+                                batch.next(), e);
+                        isolateUntil = batch.next();
+                        continue;
+                    }
+                    if (batch.hits().isEmpty()) {
+                        throw e;
+                    }
+                    deadLetter(batch, e);
+                }
+                position = batch.next();
+                if (isolateUntil != null && position.compareTo(isolateUntil) >= 0) {
+                    isolateUntil = null;
+                }
+                spool.release(position);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.warn("Не удалось перенести хиты из журнала в БД, повтор через {}", retryInterval, e);
+                try {
+                    Thread.sleep(retryInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void write(SpoolBatch batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!batch.hits().isEmpty()) {
+                hitWriter.write(batch.hits());
+            }
+            checkpointRepository.save(spoolId, batch.next());
+        });
+    }
+
+    // Запись сохраняется в формате тела /hit/batch, чтобы после исправления её можно было отправить заново
+    private void deadLetter(SpoolBatch batch, DataIntegrityViolationException cause) throws IOException {
+        EndpointHit hit = batch.hits().getFirst();
+        EndpointHitDto dto = new EndpointHitDto(hit.getApp(), hit.getUri(), hit.getIp(), hit.getCreatedDate());
+        Files.writeString(directory.resolve(DEAD_LETTER_FILE), objectMapper.writeValueAsString(dto) + "\n",
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(spoolId, batch.next()));
+        deadLetterCounter.increment();
+        log.error("Хит журнала до позиции {} отклонён БД и перенесён в {}: {}", batch.next(), DEAD_LETTER_FILE,
+                cause.getMostSpecificCause().getMessage());
+    }
+}
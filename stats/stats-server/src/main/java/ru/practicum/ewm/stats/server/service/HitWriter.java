@@ -0,0 +1,45 @@
+package ru.practicum.ewm.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class HitWriter {
+    private final HitJdbcRepository hitJdbcRepository;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final TotalsService totalsService;
+    private final RecentStatsService recentStatsService;
+    private final TopService topService;
+    private final UriIndexService uriIndexService;
+    private final TrendingService trendingService;
+
+    @Transactional
+    public void write(List<EndpointHit> hits) {
+        hitJdbcRepository.saveAll(hits);
+        rollupService.apply(hits);
+        totalsService.apply(hits);
+        // Структуры в памяти обновляются после фиксации, чтобы откат не оставил в них несохранённые хиты
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sketchService.add(hits);
+                recentStatsService.add(hits);
+                topService.add(hits);
+                trendingService.add(hits);
+                uriIndexService.add(hits.stream().map(EndpointHit::getUri).collect(Collectors.toSet()));
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.stats.server.mapper.IpCodec;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Переносит хиты из таблицы hit старого формата (строковые app, uri и ip) в endpoint_hit.
+// Каждая порция переносится и удаляется из hit в одной транзакции, поэтому прерванный перенос продолжится
+// при следующем старте. Выполняется до того, как сервис начнёт принимать запросы. Ip, не являющийся адресом,
+// переносится как есть; строка, которую нельзя сохранить, останавливает перенос, и таблица hit остаётся
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class LegacyHitMigrator {
+    private final JdbcTemplate jdbcTemplate;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public LegacyHitMigrator(JdbcTemplate jdbcTemplate, HitJdbcRepository hitJdbcRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${stats.migration.chunk-size:10000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!legacyTableExists()) {
+            return;
+        }
+        log.info("Найдена таблица hit старого формата, переносим хиты в endpoint_hit порциями по {}", chunkSize);
+        long migrated = 0;
+        while (true) {
+            Integer read = transactionTemplate.execute(status -> migrateChunk());
+            if (read == null || read == 0) {
+                break;
+            }
+            migrated += read;
+            log.info("Перенесено хитов: {}", migrated);
+        }
+        jdbcTemplate.execute("drop table hit");
+        log.info("Перенос завершён: перенесено {}, таблица hit удалена", migrated);
+    }
+
+    private boolean legacyTableExists() {
+        Integer tables = jdbcTemplate.queryForObject("select count(*) from information_schema.tables " +
+                "where lower(table_name) = 'hit'", Integer.class);
+        return tables != null && tables > 0;
+    }
+
+    private int migrateChunk() {
+        List<EndpointHit> hits = new ArrayList<>(chunkSize);
+        long[] maxId = {Long.MIN_VALUE};
+        jdbcTemplate.query("select hit_id, app, uri, ip, created_date from hit order by hit_id limit ?",
+                (RowCallbackHandler) rs -> {
+                    long id = rs.getLong("hit_id");
+                    maxId[0] = Math.max(maxId[0], id);
+                    String ip = rs.getString("ip");
+                    if (!IpCodec.isValid(ip)) {
+                        throw new IllegalStateException("Хит " + id + " таблицы hit с ip '" + ip +
+                                "' нельзя перенести, исправьте или удалите его и перезапустите сервис");
+                    }
+                    hits.add(EndpointHit.builder()
+                            .app(rs.getString("app"))
+                            .uri(rs.getString("uri"))
+                            .ip(ip)
+                            .createdDate(rs.getObject("created_date", LocalDateTime.class))
+                            .build());
+                }, chunkSize);
+        if (!hits.isEmpty()) {
+            hitJdbcRepository.saveAll(hits);
+            jdbcTemplate.update("delete from hit where hit_id <= ?", maxId[0]);
+        }
+        return hits.size();
+    }
+}
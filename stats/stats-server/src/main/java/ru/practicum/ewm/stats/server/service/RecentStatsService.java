@@ -0,0 +1,17 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface RecentStatsService {
+
+    boolean isEnabled();
+
+    void add(List<EndpointHit> hits);
+
+    Optional<List<StatsDto>> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+}
@@ -0,0 +1,81 @@
+package ru.practicum.ewm.stats.server.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.recent.RecentHitCounters;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Счётчики в памяти видят только хиты, записанные этим экземпляром после старта,
+// поэтому при нескольких экземплярах на одной БД их нужно отключать
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class RecentStatsServiceImpl implements RecentStatsService {
+    private static final long FUTURE_TOLERANCE_SECONDS = 60;
+
+    private final boolean enabled;
+    private final RecentHitCounters counters;
+
+    public RecentStatsServiceImpl(MeterRegistry meterRegistry,
+                                  @Value("${stats.recent.enabled:false}") boolean enabled,
+                                  @Value("${stats.recent.second-horizon:PT1H}") Duration secondHorizon,
+                                  @Value("${stats.recent.horizon:PT24H}") Duration horizon,
+                                  @Value("${stats.recent.max-uris:2000}") int maxUris) {
+        this.enabled = enabled;
+        this.counters = new RecentHitCounters((int) secondHorizon.toSeconds(), (int) horizon.toMinutes(), maxUris,
+                toSecond(LocalDateTime.now()));
+        Gauge.builder("stats.recent.uris", counters, RecentHitCounters::size).register(meterRegistry);
+        Gauge.builder("stats.recent.memory", counters, RecentHitCounters::memoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.recent.evicted", counters, RecentHitCounters::evicted).register(meterRegistry);
+        if (enabled) {
+            log.info("Счётчики недавних хитов в памяти: посекундно за {}, поминутно за {}, не более {} uri",
+                    secondHorizon, horizon, maxUris);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void add(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        long now = toSecond(LocalDateTime.now());
+        for (EndpointHit hit : hits) {
+            counters.add(new AppUri(hit.getApp(), hit.getUri()), toSecond(hit.getCreatedDate()), now,
+                    now + FUTURE_TOLERANCE_SECONDS);
+        }
+    }
+
+    @Override
+    public Optional<List<StatsDto>> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<AppUri, Long> hits = counters.sum(toSecond(start), toSecond(end), new HashSet<>(uris),
+                toSecond(LocalDateTime.now()));
+        return Optional.ofNullable(hits).map(DtoMapper::toStatsDtos);
+    }
+
+    private static long toSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.ewm.stats.server.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RetentionService {
+
+    void createPartitions();
+
+    void compact();
+
+    Optional<LocalDateTime> getRawHorizon();
+}
@@ -0,0 +1,162 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.RollupMismatch;
+import ru.practicum.ewm.stats.server.repository.DictionaryRepository;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+import ru.practicum.ewm.stats.server.repository.PartitionRepository;
+import ru.practicum.ewm.stats.server.repository.RetentionRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Сырые хиты старше срока хранения своего app удаляются, в запросах по таким окнам остаются агрегаты и скетчи.
+// Перед удалением агрегаты за ещё не сжатые дни сверяются с сырыми хитами и при расхождении пересчитываются
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class RetentionServiceImpl implements RetentionService {
+    private final PartitionRepository partitionRepository;
+    private final RetentionRepository retentionRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final DictionaryRepository dictionaryRepository;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration defaultRetention;
+    private final Map<String, Duration> appRetention;
+    private final int precreateDays;
+    // под блокировкой идут запросы к БД: виртуальный поток, ждущий их внутри synchronized, занял бы несущий
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile LocalDateTime rawHorizon;
+
+    public RetentionServiceImpl(PartitionRepository partitionRepository, RetentionRepository retentionRepository,
+                                HitJdbcRepository hitJdbcRepository, DictionaryRepository dictionaryRepository,
+                                RollupService rollupService, SketchService sketchService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${stats.retention.enabled:false}") boolean enabled,
+                                @Value("${stats.retention.raw:P90D}") Duration defaultRetention,
+                                @Value("#{${stats.retention.apps:{:}}}") Map<String, Duration> appRetention,
+                                @Value("${stats.partition.precreate-days:7}") int precreateDays) {
+        this.partitionRepository = partitionRepository;
+        this.retentionRepository = retentionRepository;
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.dictionaryRepository = dictionaryRepository;
+        this.rollupService = rollupService;
+        this.sketchService = sketchService;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.defaultRetention = defaultRetention;
+        this.appRetention = appRetention;
+        this.precreateDays = precreateDays;
+    }
+
+    @PostConstruct
+    public void init() {
+        rawHorizon = retentionRepository.getHorizon().orElse(null);
+        createPartitions();
+    }
+
+    @Override
+    @Scheduled(cron = "${stats.partition.cron:0 0 1 * * *}")
+    public void createPartitions() {
+        if (!partitionRepository.isPartitioned()) {
+            return;
+        }
+        Set<LocalDate> existing = new HashSet<>(partitionRepository.findAll());
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= precreateDays; i++) {
+            LocalDate day = today.plusDays(i);
+            if (existing.contains(day)) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> partitionRepository.create(day));
+                log.info("Создана партиция сырых хитов за {}", day);
+            } catch (DataAccessException e) {
+                log.warn("Не удалось создать партицию сырых хитов за {}", day, e);
+            }
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "${stats.retention.cron:0 30 3 * * *}")
+    public void compact() {
+        lock.lock();
+        try {
+            if (!enabled) {
+                return;
+            }
+            if (!rollupService.isEnabled()) {
+                log.warn("Агрегаты отключены, сырые хиты не удаляются");
+                return;
+            }
+            LocalDateTime today = LocalDate.now().atStartOfDay();
+            Map<String, LocalDateTime> cutoffs = new TreeMap<>();
+            for (String app : dictionaryRepository.findAppNames()) {
+                Duration retention = appRetention.getOrDefault(app, defaultRetention);
+                cutoffs.put(app, RollupGranularity.DAY.floor(today.minus(retention)));
+            }
+            if (cutoffs.isEmpty()) {
+                return;
+            }
+            sketchService.flush();
+            verifyRollups(Collections.max(cutoffs.values()));
+            LocalDateTime dropBefore = Collections.min(cutoffs.values());
+            if (partitionRepository.isPartitioned()) {
+                partitionRepository.findAll().stream()
+                        .filter(day -> !day.plusDays(1).atStartOfDay().isAfter(dropBefore))
+                        .forEach(day -> {
+                            partitionRepository.drop(day);
+                            log.info("Удалена партиция сырых хитов за {}", day);
+                        });
+            }
+            Map<String, LocalDateTime> compacted = retentionRepository.findAll();
+            cutoffs.forEach((app, cutoff) -> {
+                if (compacted.containsKey(app) && !cutoff.isAfter(compacted.get(app))) {
+                    return;
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    int deleted = hitJdbcRepository.deleteBefore(app, cutoff);
+                    retentionRepository.save(app, cutoff);
+                    log.info("Удалены сырые хиты app {} раньше {}: {}", app, cutoff, deleted);
+                });
+            });
+            rawHorizon = retentionRepository.getHorizon().orElse(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<LocalDateTime> getRawHorizon() {
+        return Optional.ofNullable(rawHorizon);
+    }
+
+    // Дни до текущей границы уже сверены, а начиная с неё сырые хиты есть по всем app
+    private void verifyRollups(LocalDateTime before) {
+        LocalDateTime from = rawHorizon != null ? rawHorizon : hitJdbcRepository.getRawRange()[0];
+        if (from == null || !from.isBefore(before)) {
+            return;
+        }
+        LocalDateTime end = before.minusSeconds(1);
+        List<RollupMismatch> mismatches = rollupService.check(from, end);
+        if (!mismatches.isEmpty()) {
+            log.warn("Агрегаты за период с {} по {} расходятся с сырыми хитами, пересчитываем перед удалением",
+                    from, before);
+            rollupService.rebuild(from, end);
+        }
+    }
+}
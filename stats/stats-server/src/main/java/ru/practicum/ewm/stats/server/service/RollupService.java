@@ -0,0 +1,28 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.RollupMismatch;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface RollupService {
+
+    boolean isEnabled();
+
+    void apply(List<EndpointHit> hits);
+
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    Stream<StatsDto> streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, StatsOrder order,
+                                 Integer limit);
+
+    void rebuild(LocalDateTime start, LocalDateTime end);
+
+    List<RollupMismatch> check(LocalDateTime start, LocalDateTime end);
+
+    void backfillIfEmpty();
+}
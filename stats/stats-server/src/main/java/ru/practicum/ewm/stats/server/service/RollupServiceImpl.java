@@ -0,0 +1,160 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
+import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.*;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+import ru.practicum.ewm.stats.server.repository.RetentionRepository;
+import ru.practicum.ewm.stats.server.repository.RollupRepository;
+import ru.practicum.ewm.stats.server.repository.StatsCursorRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class RollupServiceImpl implements RollupService {
+    private final RollupRepository rollupRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final StatsCursorRepository statsCursorRepository;
+    private final RetentionRepository retentionRepository;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void apply(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<RollupKey, Long> deltas = new HashMap<>();
+            for (EndpointHit hit : hits) {
+                RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), granularity.floor(hit.getCreatedDate()));
+                deltas.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, deltas.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey(RollupKey.LOCK_ORDER))
+                    .toList());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        List<TimeSegment> segments = WindowPlanner.plan(start, end.plus(1, ChronoUnit.MICROS),
+                RollupGranularity.COARSEST_FIRST);
+        for (TimeSegment segment : segments) {
+            getSegmentStats(segment, uris).forEach(dto ->
+                    hits.merge(new AppUri(dto.getApp(), dto.getUri()), dto.getHits(), Long::sum));
+        }
+        return DtoMapper.toStatsDtos(hits);
+    }
+
+    @Override
+    public Stream<StatsDto> streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, StatsOrder order,
+                                        Integer limit) {
+        return statsCursorRepository.streamRollups(WindowPlanner.plan(start, end.plus(1, ChronoUnit.MICROS),
+                RollupGranularity.COARSEST_FIRST), uris, order, limit);
+    }
+
+    @Override
+    @Transactional
+    public void rebuild(LocalDateTime start, LocalDateTime end) {
+        checkPeriod(start, end);
+        LocalDateTime from = RollupGranularity.DAY.floor(start);
+        LocalDateTime to = RollupGranularity.DAY.floor(end).plusDays(1);
+        checkRawKept(from);
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            rollupRepository.delete(granularity, from, to);
+        }
+        rollupRepository.rebuildFromRaw(from, to);
+        rollupRepository.rebuildFromFiner(RollupGranularity.HOUR, RollupGranularity.MINUTE, from, to);
+        rollupRepository.rebuildFromFiner(RollupGranularity.DAY, RollupGranularity.HOUR, from, to);
+        log.info("Агрегаты пересчитаны за период с {} по {}", from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<RollupMismatch> check(LocalDateTime start, LocalDateTime end) {
+        checkPeriod(start, end);
+        LocalDateTime from = RollupGranularity.DAY.floor(start);
+        LocalDateTime to = RollupGranularity.DAY.floor(end).plusDays(1);
+        Map<AppUri, Long> raw = toMap(statsCursorRepository.getRawInRange(from, to, List.of()));
+        List<RollupMismatch> mismatches = new ArrayList<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<AppUri, Long> rollup = toMap(rollupRepository.getStats(granularity, from, to, List.of()));
+            Set<AppUri> keys = new HashSet<>(raw.keySet());
+            keys.addAll(rollup.keySet());
+            for (AppUri key : keys) {
+                long rawHits = raw.getOrDefault(key, 0L);
+                long rollupHits = rollup.getOrDefault(key, 0L);
+                if (rawHits != rollupHits) {
+                    mismatches.add(new RollupMismatch(granularity, key.app(), key.uri(), rawHits, rollupHits));
+                }
+            }
+        }
+        log.info("Проверка агрегатов за период с {} по {}: расхождений {}", from, to, mismatches.size());
+        return mismatches;
+    }
+
+    @Override
+    @Transactional
+    public void backfillIfEmpty() {
+        if (!enabled || !rollupRepository.isEmpty()) {
+            return;
+        }
+        LocalDateTime[] range = hitJdbcRepository.getRawRange();
+        LocalDateTime from = range[0] == null ? null
+                : retentionRepository.getHorizon().filter(range[0]::isBefore).orElse(range[0]);
+        if (from != null && !from.isAfter(range[1])) {
+            log.info("Таблицы агрегатов пусты, заполняем по сырым хитам с {} по {}", from, range[1]);
+            rebuild(from, range[1]);
+        }
+    }
+
+    private List<StatsDto> getSegmentStats(TimeSegment segment, List<String> uris) {
+        if (!segment.isRaw()) {
+            return rollupRepository.getStats(segment.granularity(), segment.from(), segment.to(), uris);
+        }
+        return statsCursorRepository.getRawInRange(segment.from(), segment.to(), uris);
+    }
+
+    private Map<AppUri, Long> toMap(List<StatsDto> stats) {
+        Map<AppUri, Long> result = new HashMap<>();
+        stats.forEach(dto -> result.put(new AppUri(dto.getApp(), dto.getUri()), dto.getHits()));
+        return result;
+    }
+
+    private void checkRawKept(LocalDateTime from) {
+        Optional<LocalDateTime> horizon = retentionRepository.getHorizon();
+        if (horizon.isPresent() && from.isBefore(horizon.get())) {
+            throw new ValidationException("Сырые хиты раньше " + horizon.get() + " удалены, пересчёт невозможен");
+        }
+    }
+
+    private void checkPeriod(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("End не может быть раньше start");
+        }
+    }
+}
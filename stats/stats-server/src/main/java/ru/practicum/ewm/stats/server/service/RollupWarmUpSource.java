@@ -0,0 +1,45 @@
+package ru.practicum.ewm.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.RollupKey;
+import ru.practicum.ewm.stats.server.repository.DictionaryRepository;
+import ru.practicum.ewm.stats.server.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+// Uri из словаря hit_uri, бакеты из таблиц агрегатов; без stats.rollup.enabled бакетов нет
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class RollupWarmUpSource implements WarmUpSource {
+    private final DictionaryRepository dictionaryRepository;
+    private final RollupRepository rollupRepository;
+    private final RollupService rollupService;
+
+    @Override
+    public boolean hasBuckets() {
+        return rollupService.isEnabled();
+    }
+
+    @Override
+    public void forEachBucket(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                              ObjLongConsumer<RollupKey> consumer) {
+        rollupRepository.forEachBucket(granularity, from, to, consumer);
+    }
+
+    @Override
+    public long forEachUri(long afterId, Consumer<String> consumer) {
+        return dictionaryRepository.forEachUriNameAfter(afterId, consumer);
+    }
+
+    @Override
+    public List<String> findUrisByPrefix(String prefix) {
+        return dictionaryRepository.findUriNamesByPrefix(prefix);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HistogramDto;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
+import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.segment.SegmentStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Альтернативный движок хранения без БД: хиты пишутся в сегментные файлы, выборки считаются по ним.
+// Включается stats.storage=segment, агрегаты, скетчи и счётчики БД в этом режиме не ведутся.
+// Сводки самых посещаемых uri и тренды обновляются здесь же после записи в сегменты, а при старте заполняются
+// по сегментам через SegmentWarmUpSource
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "segment")
+@Slf4j
+public class SegmentStatsService implements StatsService {
+    private final SegmentStore segmentStore;
+    private final UriIndexService uriIndexService;
+    private final TopService topService;
+    private final TrendingService trendingService;
+    private final int maxHistogramBuckets;
+    private final boolean retentionEnabled;
+    private final Duration retention;
+
+    public SegmentStatsService(SegmentStore segmentStore, UriIndexService uriIndexService, TopService topService,
+                               TrendingService trendingService,
+                               @Value("${stats.histogram.max-buckets:10000}") int maxHistogramBuckets,
+                               @Value("${stats.retention.enabled:false}") boolean retentionEnabled,
+                               @Value("${stats.retention.raw:P90D}") Duration defaultRetention,
+                               @Value("#{${stats.retention.apps:{:}}}") Map<String, Duration> appRetention) {
+        this.segmentStore = segmentStore;
+        this.uriIndexService = uriIndexService;
+        this.topService = topService;
+        this.trendingService = trendingService;
+        this.maxHistogramBuckets = maxHistogramBuckets;
+        this.retentionEnabled = retentionEnabled;
+        // в сегменте хиты разных app, поэтому он удаляется по самому долгому сроку хранения
+        this.retention = appRetention.values().stream()
+                .reduce(defaultRetention, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                   boolean approximate) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("End не может быть раньше start");
+        }
+        return DtoMapper.toStatsDtos(unique
+                ? segmentStore.countUnique(start, end, new HashSet<>(uris))
+                : segmentStore.count(start, end, new HashSet<>(uris)));
+    }
+
+    // Сегменты отдают результат целиком, сортировка и limit применяются к нему
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            StatsOrder order, Integer limit, Consumer<StatsDto> consumer) {
+        if (limit != null && limit < 1) {
+            throw new ValidationException("Limit должен быть положительным");
+        }
+        getStats(start, end, uris, unique, false).stream()
+                .sorted(order.getComparator())
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .forEach(consumer);
+    }
+
+    @Override
+    public void streamHistogram(LocalDateTime start, LocalDateTime end, Duration step, List<String> uris,
+                                boolean unique, Consumer<HistogramDto> consumer) {
+        HistogramBuckets.check(start, end, step, maxHistogramBuckets);
+        HistogramBuckets.emit(segmentStore.histogram(start, end, step, new HashSet<>(uris), unique).iterator(),
+                start, step, consumer);
+    }
+
+    @Override
+    public void saveHit(EndpointHitDto endpointHitDto) {
+        save(List.of(DtoMapper.toEndpointHit(endpointHitDto)));
+    }
+
+    @Override
+    public void saveHits(List<EndpointHitDto> endpointHitDtos) {
+        save(endpointHitDtos.stream().map(DtoMapper::toEndpointHit).toList());
+    }
+
+    private void save(List<EndpointHit> hits) {
+        segmentStore.append(hits);
+        topService.add(hits);
+        trendingService.add(hits);
+        uriIndexService.add(hits.stream().map(EndpointHit::getUri).collect(Collectors.toSet()));
+    }
+
+    @Scheduled(fixedDelayString = "${stats.segment.force-interval:PT1S}")
+    public void force() {
+        segmentStore.force();
+    }
+
+    @Scheduled(cron = "${stats.retention.cron:0 30 3 * * *}")
+    public void applyRetention() {
+        if (!retentionEnabled) {
+            return;
+        }
+        int deleted = segmentStore.deleteBefore(LocalDateTime.now().minus(retention));
+        log.info("По сроку хранения {} удалено сегментов: {}", retention, deleted);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.ewm.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.RollupKey;
+import ru.practicum.ewm.stats.server.segment.SegmentStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+// Uri из словаря ключей сегментов, бакеты считаются сканированием сегментов за запрошенный период
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "segment")
+@RequiredArgsConstructor
+public class SegmentWarmUpSource implements WarmUpSource {
+    private final SegmentStore segmentStore;
+
+    @Override
+    public boolean hasBuckets() {
+        return true;
+    }
+
+    @Override
+    public void forEachBucket(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                              ObjLongConsumer<RollupKey> consumer) {
+        segmentStore.forEachBucket(from, to, Duration.ofSeconds(granularity.getSeconds()), consumer);
+    }
+
+    @Override
+    public long forEachUri(long afterId, Consumer<String> consumer) {
+        List<AppUri> keys = segmentStore.getKeys((int) afterId);
+        keys.stream().map(AppUri::uri).distinct().forEach(consumer);
+        return afterId + keys.size();
+    }
+
+    @Override
+    public List<String> findUrisByPrefix(String prefix) {
+        return segmentStore.getKeys().stream().map(AppUri::uri).filter(uri -> uri.startsWith(prefix))
+                .distinct().toList();
+    }
+}
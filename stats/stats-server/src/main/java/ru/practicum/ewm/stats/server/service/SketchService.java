@@ -0,0 +1,28 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface SketchService {
+
+    boolean isEnabled();
+
+    void add(List<EndpointHit> hits);
+
+    void flush();
+
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<StatsDto> getTotalStats(Collection<AppUri> appUris);
+
+    void rebuild(LocalDateTime start, LocalDateTime end);
+
+    void rebuildTotals();
+
+    void backfillIfEmpty();
+}
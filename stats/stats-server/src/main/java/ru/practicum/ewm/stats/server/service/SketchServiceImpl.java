@@ -0,0 +1,272 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.*;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+import ru.practicum.ewm.stats.server.repository.RetentionRepository;
+import ru.practicum.ewm.stats.server.repository.SketchRepository;
+import ru.practicum.ewm.stats.server.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Скетчи копятся в памяти и периодически сливаются с сохранёнными в БД одним потоком; сохранённая строка
+// при слиянии блокируется, поэтому слияния нескольких экземпляров на одной БД не теряют друг друга
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class SketchServiceImpl implements SketchService {
+    private static final List<RollupGranularity> GRANULARITIES = List.of(RollupGranularity.DAY,
+            RollupGranularity.HOUR);
+
+    private final SketchRepository sketchRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final RetentionRepository retentionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<SketchKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+    private volatile Map<SketchKey, HyperLogLog> flushing = Map.of();
+
+    @Value("${stats.sketch.enabled:true}")
+    private boolean enabled;
+
+    public SketchServiceImpl(SketchRepository sketchRepository, HitJdbcRepository hitJdbcRepository,
+                             RetentionRepository retentionRepository, TransactionTemplate transactionTemplate) {
+        this.sketchRepository = sketchRepository;
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.retentionRepository = retentionRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void add(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            for (EndpointHit hit : hits) {
+                for (RollupGranularity granularity : GRANULARITIES) {
+                    SketchKey key = new SketchKey(granularity, hit.getApp(), hit.getUri(),
+                            granularity.floor(hit.getCreatedDate()));
+                    HyperLogLog sketch = pending.computeIfAbsent(key, k -> new HyperLogLog());
+                    synchronized (sketch) {
+                        sketch.add(hit.getIp());
+                    }
+                }
+                HyperLogLog total = pending.computeIfAbsent(SketchKey.total(hit.getApp(), hit.getUri()),
+                        k -> new HyperLogLog());
+                synchronized (total) {
+                    total.add(hit.getIp());
+                }
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.sketch.flush-interval:PT5S}")
+    public void flush() {
+        swapLock.writeLock().lock();
+        try {
+            flushing = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (flushing.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> flushing.forEach(this::mergeIntoStored));
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить {} скетчей уникальных посетителей, повторим позже", flushing.size(), e);
+            returnToPending(flushing);
+        }
+        flushing = Map.of();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<SketchKey, HyperLogLog> pendingSnapshot = pending;
+        Map<SketchKey, HyperLogLog> flushingSnapshot = flushing;
+        Set<String> uriFilter = new HashSet<>(uris);
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        for (TimeSegment segment : WindowPlanner.plan(start, end.plus(1, ChronoUnit.MICROS), GRANULARITIES)) {
+            if (segment.isRaw()) {
+                hitJdbcRepository.forEachDistinctIp(segment.from(), segment.to(), uris, hit ->
+                        sketchOf(sketches, new AppUri(hit.getApp(), hit.getUri())).add(hit.getIp()));
+                continue;
+            }
+            sketchRepository.forEach(segment.granularity(), segment.from(), segment.to(), uris, (appUri, bytes) ->
+                    sketchOf(sketches, appUri).merge(HyperLogLog.fromBytes(bytes)));
+            mergeInMemory(pendingSnapshot, segment, uriFilter, sketches);
+            mergeInMemory(flushingSnapshot, segment, uriFilter, sketches);
+        }
+        Map<AppUri, Long> counts = new HashMap<>();
+        sketches.forEach((appUri, sketch) -> counts.put(appUri, sketch.estimate()));
+        return DtoMapper.toStatsDtos(counts);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsDto> getTotalStats(Collection<AppUri> appUris) {
+        Map<SketchKey, HyperLogLog> pendingSnapshot = pending;
+        Map<SketchKey, HyperLogLog> flushingSnapshot = flushing;
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        for (AppUri appUri : appUris) {
+            sketches.put(appUri, new HyperLogLog());
+        }
+        List<String> uris = appUris.stream().map(AppUri::uri).distinct().toList();
+        sketchRepository.forEachTotal(uris, (appUri, bytes) -> {
+            HyperLogLog sketch = sketches.get(appUri);
+            if (sketch != null) {
+                sketch.merge(HyperLogLog.fromBytes(bytes));
+            }
+        });
+        for (Map<SketchKey, HyperLogLog> source : List.of(pendingSnapshot, flushingSnapshot)) {
+            source.forEach((key, sketch) -> {
+                HyperLogLog target = key.isTotal() ? sketches.get(new AppUri(key.app(), key.uri())) : null;
+                if (target != null) {
+                    synchronized (sketch) {
+                        target.merge(sketch);
+                    }
+                }
+            });
+        }
+        Map<AppUri, Long> counts = new HashMap<>();
+        sketches.forEach((appUri, sketch) -> counts.put(appUri, sketch.estimate()));
+        return DtoMapper.toStatsDtos(counts);
+    }
+
+    // Скетч за всё время только объединяется с пересчитанными дневными: регистры HLL берут максимум,
+    // поэтому повторное слияние тех же данных его не искажает
+    @Override
+    @Transactional
+    public void rebuild(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime to = RollupGranularity.DAY.floor(end).plusDays(1);
+        Optional<LocalDateTime> horizon = retentionRepository.getHorizon();
+        if (horizon.isPresent() && RollupGranularity.DAY.floor(start).isBefore(horizon.get())) {
+            throw new ValidationException("Сырые хиты раньше " + horizon.get() + " удалены, пересчёт невозможен");
+        }
+        for (LocalDateTime day = RollupGranularity.DAY.floor(start); day.isBefore(to); day = day.plusDays(1)) {
+            LocalDateTime nextDay = day.plusDays(1);
+            Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+            hitJdbcRepository.forEachHit(day, nextDay, hit -> {
+                for (RollupGranularity granularity : GRANULARITIES) {
+                    sketches.computeIfAbsent(new SketchKey(granularity, hit.getApp(), hit.getUri(),
+                            granularity.floor(hit.getCreatedDate())), k -> new HyperLogLog()).add(hit.getIp());
+                }
+            });
+            for (RollupGranularity granularity : GRANULARITIES) {
+                sketchRepository.delete(granularity, day, nextDay);
+            }
+            sketches.forEach((key, sketch) -> {
+                sketchRepository.save(key, sketch.toBytes());
+                if (key.granularity() == RollupGranularity.DAY) {
+                    mergeIntoStored(SketchKey.total(key.app(), key.uri()), sketch);
+                }
+            });
+        }
+        log.info("Скетчи уникальных посетителей пересчитаны за период с {} по {}", start, end);
+    }
+
+    @Override
+    @Transactional
+    public void rebuildTotals() {
+        Map<AppUri, HyperLogLog> totals = new HashMap<>();
+        sketchRepository.forEach(RollupGranularity.DAY, (appUri, bytes) ->
+                sketchOf(totals, appUri).merge(HyperLogLog.fromBytes(bytes)));
+        sketchRepository.deleteTotals();
+        totals.forEach((appUri, sketch) ->
+                sketchRepository.save(SketchKey.total(appUri.app(), appUri.uri()), sketch.toBytes()));
+        log.info("Скетчи уникальных посетителей за всё время пересчитаны по дневным, uri: {}", totals.size());
+    }
+
+    @Override
+    @Transactional
+    public void backfillIfEmpty() {
+        if (!enabled) {
+            return;
+        }
+        if (!sketchRepository.isEmpty()) {
+            if (sketchRepository.isTotalsEmpty()) {
+                rebuildTotals();
+            }
+            return;
+        }
+        LocalDateTime[] range = hitJdbcRepository.getRawRange();
+        LocalDateTime from = range[0] == null ? null
+                : retentionRepository.getHorizon().filter(range[0]::isBefore).orElse(range[0]);
+        if (from != null && !from.isAfter(range[1])) {
+            log.info("Таблицы скетчей пусты, заполняем по сырым хитам с {} по {}", from, range[1]);
+            rebuild(from, range[1]);
+        }
+    }
+
+    private void mergeInMemory(Map<SketchKey, HyperLogLog> source, TimeSegment segment, Set<String> uriFilter,
+                               Map<AppUri, HyperLogLog> sketches) {
+        source.forEach((key, sketch) -> {
+            if (key.granularity() == segment.granularity() && !key.bucket().isBefore(segment.from())
+                    && key.bucket().isBefore(segment.to()) && (uriFilter.isEmpty() || uriFilter.contains(key.uri()))) {
+                synchronized (sketch) {
+                    sketchOf(sketches, new AppUri(key.app(), key.uri())).merge(sketch);
+                }
+            }
+        });
+    }
+
+    // Строка скетча блокируется до конца транзакции, чтобы слияния нескольких экземпляров не затирали друг друга.
+    // Если строки нет, её вставка не перезаписывает вставленную параллельно, а проигравший сливает в неё
+    private void mergeIntoStored(SketchKey key, HyperLogLog sketch) {
+        byte[] stored = sketchRepository.findForUpdate(key);
+        if (stored == null) {
+            if (sketchRepository.insertIfAbsent(key, sketch.toBytes())) {
+                return;
+            }
+            stored = sketchRepository.findForUpdate(key);
+        }
+        sketchRepository.save(key, HyperLogLog.fromBytes(stored).merge(sketch).toBytes());
+    }
+
+    private void returnToPending(Map<SketchKey, HyperLogLog> sketches) {
+        swapLock.readLock().lock();
+        try {
+            sketches.forEach((key, sketch) -> {
+                HyperLogLog target = pending.computeIfAbsent(key, k -> new HyperLogLog());
+                synchronized (target) {
+                    target.merge(sketch);
+                }
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private HyperLogLog sketchOf(Map<AppUri, HyperLogLog> sketches, AppUri appUri) {
+        return sketches.computeIfAbsent(appUri, k -> new HyperLogLog());
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.repository.HitJdbcRepository;
+import ru.practicum.ewm.stats.server.repository.StatsCursorRepository;
+import ru.practicum.ewm.stats.server.sketch.HyperLogLog;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+// Запрос по большому окну сырых хитов делится на срезы длиной stats.parallel.slice, которые считаются
+// одновременно на пуле из stats.parallel.threads потоков. Счётчики срезов складываются, уникальные ip
+// сливаются скетчами HyperLogLog, поэтому unique в этом режиме приближённый. При заполненной очереди
+// срез выполняется в потоке запроса
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class SlicedStatsExecutor {
+    private final StatsCursorRepository statsCursorRepository;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final boolean enabled;
+    private final Duration slice;
+    private final ThreadPoolExecutor executor;
+
+    public SlicedStatsExecutor(StatsCursorRepository statsCursorRepository, HitJdbcRepository hitJdbcRepository,
+                               @Value("${stats.parallel.enabled:false}") boolean enabled,
+                               @Value("${stats.parallel.threads:4}") int threads,
+                               @Value("${stats.parallel.queue-size:64}") int queueSize,
+                               @Value("${stats.parallel.slice:P7D}") Duration slice) {
+        this.statsCursorRepository = statsCursorRepository;
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.enabled = enabled;
+        this.slice = slice;
+        AtomicInteger number = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "stats-slice-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Окно короче двух срезов быстрее посчитать одним запросом
+    public boolean isApplicable(LocalDateTime start, LocalDateTime end) {
+        return enabled && Duration.between(start, end).compareTo(slice.multipliedBy(2)) >= 0;
+    }
+
+    public List<StatsDto> count(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        run(start, end, (from, to) -> statsCursorRepository.getRawInRange(from, to, uris),
+                part -> part.forEach(dto -> hits.merge(new AppUri(dto.getApp(), dto.getUri()), dto.getHits(),
+                        Long::sum)));
+        return DtoMapper.toStatsDtos(hits);
+    }
+
+    public List<StatsDto> countUnique(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        run(start, end, (from, to) -> {
+            Map<AppUri, HyperLogLog> partial = new HashMap<>();
+            hitJdbcRepository.forEachDistinctIp(from, to, uris, hit -> partial.computeIfAbsent(
+                    new AppUri(hit.getApp(), hit.getUri()), key -> new HyperLogLog()).add(hit.getIp()));
+            return partial;
+        }, part -> part.forEach((key, sketch) -> sketches.merge(key, sketch, HyperLogLog::merge)));
+        Map<AppUri, Long> counts = new HashMap<>();
+        sketches.forEach((key, sketch) -> counts.put(key, sketch.estimate()));
+        return DtoMapper.toStatsDtos(counts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // end входит в окно, как в /stats, срезы — полуинтервалы. Результаты сливаются в порядке готовности, в том
+    // числе между отправками срезов, и больше не удерживаются: скетчи по каждому uri за все срезы года в память
+    // не помещаются
+    private <T> void run(LocalDateTime start, LocalDateTime end, BiFunction<LocalDateTime, LocalDateTime, T> query,
+                         Consumer<T> merge) {
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        // Готовый Future держит свой результат, поэтому слитые сразу убираются из pending
+        Set<Future<T>> pending = new HashSet<>();
+        try {
+            for (LocalDateTime from = start; from.isBefore(to); from = from.plus(slice)) {
+                LocalDateTime sliceFrom = from;
+                LocalDateTime sliceTo = from.plus(slice).isBefore(to) ? from.plus(slice) : to;
+                pending.add(completion.submit(() -> query.apply(sliceFrom, sliceTo)));
+                for (Future<T> done = completion.poll(); done != null; done = completion.poll()) {
+                    pending.remove(done);
+                    merge.accept(done.get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                Future<T> done = completion.take();
+                pending.remove(done);
+                merge.accept(done.get());
+            }
+        } catch (InterruptedException e) {
+            pending.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запрос статистики прерван", e);
+        } catch (ExecutionException e) {
+            pending.forEach(future -> future.cancel(true));
+            log.error("Не удалось посчитать срез статистики за окно с {} по {}", start, end, e.getCause());
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
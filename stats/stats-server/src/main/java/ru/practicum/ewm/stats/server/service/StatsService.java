@@ -1,14 +1,27 @@
 package ru.practicum.ewm.stats.server.service;
 
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HistogramDto;
 import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
 
-    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            boolean approximate);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, StatsOrder order,
+                     Integer limit, Consumer<StatsDto> consumer);
+
+    void streamHistogram(LocalDateTime start, LocalDateTime end, Duration step, List<String> uris, boolean unique,
+                         Consumer<HistogramDto> consumer);
 
     void saveHit(EndpointHitDto endpointHitDto);
+
+    void saveHits(List<EndpointHitDto> endpointHitDtos);
 }
@@ -2,42 +2,168 @@ package ru.practicum.ewm.stats.server.service;
 
 import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.stats.dto.EndpointHitDto;
+import ru.practicum.ewm.stats.dto.HistogramDto;
 import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.enums.StatsOrder;
 import ru.practicum.ewm.stats.server.mapper.DtoMapper;
+import ru.practicum.ewm.stats.server.model.HistogramPoint;
+import ru.practicum.ewm.stats.server.model.HitTotal;
+import ru.practicum.ewm.stats.server.model.TotalsCoverage;
+import ru.practicum.ewm.stats.server.repository.StatsCursorRepository;
 import ru.practicum.ewm.stats.server.repository.StatsRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class StatsServiceImpl implements StatsService {
     private final StatsRepository statsRepository;
+    private final StatsCursorRepository statsCursorRepository;
+    private final HitIngestor hitIngestor;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final TotalsService totalsService;
+    private final RecentStatsService recentStatsService;
+    private final RetentionService retentionService;
+    private final SlicedStatsExecutor slicedStatsExecutor;
+
+    @Value("${stats.histogram.max-buckets:10000}")
+    private int maxHistogramBuckets;
 
     @Override
-    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                   boolean approximate) {
         if (start.isAfter(end)) {
             throw new ValidationException("End не может быть раньше start");
         }
+        if (unique && !approximate) {
+            checkNotCompacted(start);
+        }
+
+        if (!unique && recentStatsService.isEnabled()) {
+            Optional<List<StatsDto>> recent = recentStatsService.getStats(start, end, uris);
+            if (recent.isPresent()) {
+                return recent.get();
+            }
+        }
+        if (totalsService.isEnabled() && (!unique || approximate && sketchService.isEnabled())) {
+            TotalsCoverage coverage = totalsService.getCoverage(start, end, uris);
+            if (coverage.complete() || !coverage.covered().isEmpty()) {
+                List<StatsDto> result = new ArrayList<>(unique
+                        ? sketchService.getTotalStats(coverage.covered().stream().map(HitTotal::appUri).toList())
+                        : DtoMapper.totalsToStatsDtos(coverage.covered()));
+                if (!coverage.complete()) {
+                    result.addAll(getWindowStats(start, end, coverage.remainingUris(), unique, approximate));
+                    result.sort(Comparator.comparing(StatsDto::getHits).reversed());
+                }
+                return result;
+            }
+        }
+        return getWindowStats(start, end, uris, unique, approximate);
+    }
 
-        if (!uris.isEmpty() && unique) {
-            return statsRepository.getStatsByUriWithUniqueIp(start, end, uris);
-        } else if (uris.isEmpty() && unique) {
+    private List<StatsDto> getWindowStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                          boolean approximate) {
+        if (!unique && rollupService.isEnabled()) {
+            return rollupService.getStats(start, end, uris);
+        }
+        if (unique && approximate && sketchService.isEnabled()) {
+            return sketchService.getStats(start, end, uris);
+        }
+        if ((!unique || approximate) && slicedStatsExecutor.isApplicable(start, end)) {
+            return unique
+                    ? slicedStatsExecutor.countUnique(start, end, uris)
+                    : slicedStatsExecutor.count(start, end, uris);
+        }
+        if (!uris.isEmpty()) {
+            // список uri передаётся в БД одним параметром-массивом, JPQL развернул бы его в IN по элементу
+            try (Stream<StatsDto> stats = statsCursorRepository.streamRaw(start, end, uris, unique,
+                    StatsOrder.HITS_DESC, null)) {
+                return stats.toList();
+            }
+        } else if (unique) {
             return statsRepository.getStatsWithUniqueIp(start, end);
-        } else if (!uris.isEmpty()) {
-            return statsRepository.getStatsByUri(start, end, uris);
         } else {
             return statsRepository.getStats(start, end);
         }
     }
 
-    @Transactional
+    // Сырые хиты раньше границы хранения частично удалены, уникальные ip за такое окно остаются только в скетчах
+    private void checkNotCompacted(LocalDateTime start) {
+        Optional<LocalDateTime> horizon = retentionService.getRawHorizon().filter(start::isBefore);
+        if (horizon.isPresent()) {
+            throw new ValidationException("Сырые хиты до " + horizon.get() +
+                    " удалены, точное число уникальных ip за этот период недоступно");
+        }
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            StatsOrder order, Integer limit, Consumer<StatsDto> consumer) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("End не может быть раньше start");
+        }
+        if (limit != null && limit < 1) {
+            throw new ValidationException("Limit должен быть положительным");
+        }
+        if (unique) {
+            checkNotCompacted(start);
+        }
+        try (Stream<StatsDto> stats = !unique && rollupService.isEnabled()
+                ? rollupService.streamStats(start, end, uris, order, limit)
+                : statsCursorRepository.streamRaw(start, end, uris, unique, order, limit)) {
+            stats.forEach(consumer);
+        }
+    }
+
+    // Без unique интервалы, выровненные по бакетам агрегатов, читаются из агрегатов, остальное из сырых хитов
+    @Override
+    public void streamHistogram(LocalDateTime start, LocalDateTime end, Duration step, List<String> uris,
+                                boolean unique, Consumer<HistogramDto> consumer) {
+        HistogramBuckets.check(start, end, step, maxHistogramBuckets);
+        if (unique) {
+            checkNotCompacted(start);
+        }
+        List<RollupGranularity> granularities = !unique && rollupService.isEnabled()
+                ? RollupGranularity.COARSEST_FIRST.stream().filter(granularity -> fits(granularity, start, step))
+                .toList()
+                : List.of();
+        try (Stream<HistogramPoint> points = statsCursorRepository.streamHistogram(
+                WindowPlanner.plan(start, end, granularities), start, step.toSeconds(), uris, unique)) {
+            HistogramBuckets.emit(points.iterator(), start, step, consumer);
+        }
+    }
+
+    // Бакет агрегата не должен пересекать границу интервала гистограммы
+    private static boolean fits(RollupGranularity granularity, LocalDateTime start, Duration step) {
+        return granularity.floor(start).equals(start) && step.toSeconds() % granularity.getSeconds() == 0;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
     public void saveHit(EndpointHitDto endpointHitDto) {
-        statsRepository.save(DtoMapper.toEndpointHit(endpointHitDto));
+        hitIngestor.accept(DtoMapper.toEndpointHit(endpointHitDto));
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public void saveHits(List<EndpointHitDto> endpointHitDtos) {
+        hitIngestor.acceptBatch(endpointHitDtos.stream().map(DtoMapper::toEndpointHit).toList());
     }
 }
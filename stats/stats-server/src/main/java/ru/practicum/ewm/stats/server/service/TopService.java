@@ -0,0 +1,16 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface TopService {
+
+    boolean isEnabled();
+
+    void add(List<EndpointHit> hits);
+
+    List<StatsDto> getTop(int n, Duration window, String app);
+}
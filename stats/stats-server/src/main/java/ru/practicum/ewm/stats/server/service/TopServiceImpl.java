@@ -0,0 +1,217 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Самые посещаемые uri за последнее окно. Для каждого app держатся кольцо сводок Space-Saving за последние
+// 60 минут и кольцо часовых сводок за horizon: минуты часа сливаются в часовую сводку, когда час закрывается.
+// Окно собирается из целых часов и минут по краям, его границы округляются до минуты, а начало старше 60 минут
+// сдвигается к началу своего часа. Одно app занимает не больше (60 + horizon в часах + 1) * capacity счётчиков,
+// около 8.5 МБ без строк uri при настройках по умолчанию; приложения сверх max-apps не учитываются.
+// Сводки видят только хиты своего экземпляра, при старте кольца заполняются по поминутным бакетам из WarmUpSource
+@Service
+@Slf4j
+public class TopServiceImpl implements TopService {
+    private static final long MINUTES_PER_HOUR = 60;
+
+    private final WarmUpSource warmUpSource;
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxApps;
+    private final int horizonMinutes;
+    private final int hourSlots;
+    private final Map<String, AppTop> apps = new ConcurrentHashMap<>();
+    private final AtomicBoolean overflowLogged = new AtomicBoolean();
+
+    public TopServiceImpl(WarmUpSource warmUpSource,
+                          @Value("${stats.top.enabled:true}") boolean enabled,
+                          @Value("${stats.top.capacity:1000}") int capacity,
+                          @Value("${stats.top.max-apps:100}") int maxApps,
+                          @Value("${stats.top.horizon:PT24H}") Duration horizon) {
+        this.warmUpSource = warmUpSource;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxApps = maxApps;
+        this.horizonMinutes = (int) horizon.toMinutes();
+        this.hourSlots = (int) Math.ceilDiv(horizonMinutes, MINUTES_PER_HOUR) + 1;
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled || !warmUpSource.hasBuckets()) {
+            return;
+        }
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = RollupGranularity.MINUTE.floor(to).minusMinutes(horizonMinutes - 1);
+        warmUpSource.forEachBucket(RollupGranularity.MINUTE, from, to.plusMinutes(1), (key, hits) -> {
+            AppTop top = appTop(key.app());
+            if (top != null) {
+                top.add(key.uri(), toMinute(key.bucket()), hits, toMinute(to));
+            }
+        });
+        log.info("Сводки самых посещаемых uri заполнены по поминутным бакетам с {}", from);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void add(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        long now = toMinute(LocalDateTime.now());
+        for (EndpointHit hit : hits) {
+            AppTop top = appTop(hit.getApp());
+            if (top != null) {
+                top.add(hit.getUri(), toMinute(hit.getCreatedDate()), 1, now);
+            }
+        }
+    }
+
+    @Override
+    public List<StatsDto> getTop(int n, Duration window, String app) {
+        if (!enabled) {
+            throw new ValidationException("Сводки самых посещаемых uri отключены");
+        }
+        if (n < 1 || n > capacity) {
+            throw new ValidationException("n должно быть от 1 до " + capacity);
+        }
+        long minutes = Math.ceilDiv(window.toSeconds(), 60);
+        if (minutes < 1 || minutes > horizonMinutes) {
+            throw new ValidationException("Окно должно быть от минуты до " + Duration.ofMinutes(horizonMinutes));
+        }
+        long now = toMinute(LocalDateTime.now());
+        List<StatsDto> result = new ArrayList<>();
+        Collection<String> targets = app == null ? apps.keySet() : List.of(app);
+        for (String target : targets) {
+            AppTop top = apps.get(target);
+            if (top != null) {
+                top.top(now - minutes + 1, now, n).forEach(entry ->
+                        result.add(new StatsDto(target, entry.item(), entry.count())));
+            }
+        }
+        result.sort(Comparator.comparing(StatsDto::getHits).reversed());
+        return result.size() > n ? List.copyOf(result.subList(0, n)) : result;
+    }
+
+    // Число app проверяется без блокировки и может превысить max-apps на число одновременных записей
+    private AppTop appTop(String app) {
+        AppTop top = apps.get(app);
+        if (top != null) {
+            return top;
+        }
+        if (apps.size() >= maxApps) {
+            if (overflowLogged.compareAndSet(false, true)) {
+                log.warn("Сводки самых посещаемых uri ведутся не больше чем для {} app, {} и следующие новые app " +
+                        "не учитываются", maxApps, app);
+            }
+            return null;
+        }
+        return apps.computeIfAbsent(app, k -> new AppTop());
+    }
+
+    private static long toMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private final class AppTop {
+        private final SpaceSaving[] minutes = new SpaceSaving[(int) MINUTES_PER_HOUR];
+        private final long[] minuteIds = filled(minutes.length);
+        private final SpaceSaving[] hours = new SpaceSaving[hourSlots];
+        private final long[] hourIds = filled(hourSlots);
+        // Час, минуты которого ещё не слиты в часовую сводку
+        private long openHour = Long.MIN_VALUE;
+
+        synchronized void add(String uri, long minute, long weight, long nowMinute) {
+            if (minute > nowMinute + 1 || minute <= nowMinute - horizonMinutes) {
+                return;
+            }
+            long hour = Math.floorDiv(minute, MINUTES_PER_HOUR);
+            roll(Math.floorDiv(Math.max(minute, nowMinute), MINUTES_PER_HOUR));
+            if (minute > nowMinute - MINUTES_PER_HOUR) {
+                bucket(minutes, minuteIds, minute).add(uri, weight);
+            }
+            if (hour < openHour) {
+                bucket(hours, hourIds, hour).add(uri, weight);
+            }
+        }
+
+        synchronized List<SpaceSaving.Entry> top(long fromMinute, long toMinute, int n) {
+            roll(Math.floorDiv(toMinute, MINUTES_PER_HOUR));
+            List<SpaceSaving> summaries = new ArrayList<>();
+            long minute = fromMinute <= toMinute - MINUTES_PER_HOUR
+                    ? Math.floorDiv(fromMinute, MINUTES_PER_HOUR) * MINUTES_PER_HOUR
+                    : fromMinute;
+            while (minute <= toMinute) {
+                long hour = Math.floorDiv(minute, MINUTES_PER_HOUR);
+                if (minute % MINUTES_PER_HOUR == 0 && hour < openHour) {
+                    addIfPresent(summaries, hours, hourIds, hour);
+                    minute += MINUTES_PER_HOUR;
+                } else {
+                    addIfPresent(summaries, minutes, minuteIds, minute);
+                    minute++;
+                }
+            }
+            return SpaceSaving.top(summaries, n);
+        }
+
+        // Закрывшиеся часы сливаются до того, как их минуты будут вытеснены из кольца
+        private void roll(long currentHour) {
+            for (long hour = Math.max(openHour, currentHour - hourSlots); hour < currentHour; hour++) {
+                List<SpaceSaving> summaries = new ArrayList<>();
+                for (long minute = hour * MINUTES_PER_HOUR; minute < (hour + 1) * MINUTES_PER_HOUR; minute++) {
+                    addIfPresent(summaries, minutes, minuteIds, minute);
+                }
+                addIfPresent(summaries, hours, hourIds, hour);
+                if (!summaries.isEmpty()) {
+                    int slot = (int) Math.floorMod(hour, hours.length);
+                    hours[slot] = SpaceSaving.merge(summaries, capacity);
+                    hourIds[slot] = hour;
+                }
+            }
+            openHour = Math.max(openHour, currentHour);
+        }
+        private SpaceSaving bucket(SpaceSaving[] ring, long[] ids, long id) {
+            int slot = (int) Math.floorMod(id, ring.length);
+            if (ids[slot] != id) {
+                if (ids[slot] > id) {
+                    // поздний хит в уже вытесненный бакет
+                    return new SpaceSaving(capacity);
+                }
+                ring[slot] = new SpaceSaving(capacity);
+                ids[slot] = id;
+            }
+            return ring[slot];
+        }
+
+        private void addIfPresent(List<SpaceSaving> summaries, SpaceSaving[] ring, long[] ids, long id) {
+            int slot = (int) Math.floorMod(id, ring.length);
+            if (ids[slot] == id) {
+                summaries.add(ring[slot]);
+            }
+        }
+
+        private static long[] filled(int length) {
+            long[] ids = new long[length];
+            Arrays.fill(ids, Long.MIN_VALUE);
+            return ids;
+        }
+    }
+}
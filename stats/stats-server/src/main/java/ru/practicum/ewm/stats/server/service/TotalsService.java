@@ -0,0 +1,20 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.TotalsCoverage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TotalsService {
+
+    boolean isEnabled();
+
+    void apply(List<EndpointHit> hits);
+
+    TotalsCoverage getCoverage(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    void rebuild();
+
+    void backfillIfEmpty();
+}
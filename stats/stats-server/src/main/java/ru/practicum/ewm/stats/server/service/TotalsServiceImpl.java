@@ -0,0 +1,107 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.model.HitTotal;
+import ru.practicum.ewm.stats.server.model.TotalsCoverage;
+import ru.practicum.ewm.stats.server.repository.RetentionRepository;
+import ru.practicum.ewm.stats.server.repository.TotalsRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class TotalsServiceImpl implements TotalsService {
+    private static final Comparator<HitTotal> LOCK_ORDER = Comparator.comparing(HitTotal::app)
+            .thenComparing(HitTotal::uri);
+
+    private final TotalsRepository totalsRepository;
+    private final RetentionRepository retentionRepository;
+
+    @Value("${stats.totals.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void apply(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        Map<AppUri, HitTotal> deltas = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            HitTotal delta = new HitTotal(hit.getApp(), hit.getUri(), 1, hit.getCreatedDate(), hit.getCreatedDate());
+            deltas.merge(delta.appUri(), delta, (a, b) -> new HitTotal(a.app(), a.uri(), a.hits() + b.hits(),
+                    a.firstHit().isBefore(b.firstHit()) ? a.firstHit() : b.firstHit(),
+                    a.lastHit().isAfter(b.lastHit()) ? a.lastHit() : b.lastHit()));
+        }
+        totalsRepository.increment(deltas.values().stream().sorted(LOCK_ORDER).toList());
+    }
+
+    // Окно покрывает всю историю uri, если первый и последний хит по нему попадают в [start, end]. Без uris
+    // покрытие сначала проверяется в БД, и вся таблица читается, только если окно покрывает все uri
+    @Override
+    @Transactional(readOnly = true)
+    public TotalsCoverage getCoverage(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (uris.isEmpty()) {
+            if (totalsRepository.hasHitsOutside(start, end)) {
+                return new TotalsCoverage(List.of(), uris, false);
+            }
+            // между запросами могли прийти хиты после end, поэтому прочитанные строки проверяются ещё раз
+            List<HitTotal> totals = totalsRepository.find(uris);
+            boolean complete = totals.stream().allMatch(total -> total.isWithin(start, end));
+            return complete ? new TotalsCoverage(totals, List.of(), true)
+                    : new TotalsCoverage(List.of(), uris, false);
+        }
+        List<HitTotal> totals = totalsRepository.find(uris);
+        Map<String, List<HitTotal>> byUri = totals.stream().collect(Collectors.groupingBy(HitTotal::uri));
+        List<HitTotal> covered = new ArrayList<>();
+        List<String> remaining = new ArrayList<>();
+        for (String uri : new LinkedHashSet<>(uris)) {
+            List<HitTotal> uriTotals = byUri.getOrDefault(uri, List.of());
+            if (uriTotals.stream().allMatch(total -> total.isWithin(start, end))) {
+                covered.addAll(uriTotals);
+            } else {
+                remaining.add(uri);
+            }
+        }
+        return new TotalsCoverage(covered, remaining, remaining.isEmpty());
+    }
+
+    @Override
+    @Transactional
+    public void rebuild() {
+        if (retentionRepository.getHorizon().isPresent()) {
+            throw new ValidationException("Часть сырых хитов удалена по сроку хранения, пересчёт счётчиков невозможен");
+        }
+        totalsRepository.rebuildFromRaw();
+        log.info("Счётчики хитов за всё время пересчитаны");
+    }
+
+    @Override
+    @Transactional
+    public void backfillIfEmpty() {
+        if (!enabled || !totalsRepository.isEmpty()) {
+            return;
+        }
+        if (retentionRepository.getHorizon().isPresent()) {
+            log.warn("Таблица счётчиков пуста, но часть сырых хитов удалена, счётчики не заполняются");
+            return;
+        }
+        rebuild();
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.TrendingDto;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface TrendingService {
+
+    void add(List<EndpointHit> hits);
+
+    List<TrendingDto> getTrending(String app, int n, Duration halfLife);
+
+    void snapshot();
+}
@@ -0,0 +1,160 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.TrendingDto;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.AppUri;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+import ru.practicum.ewm.stats.server.repository.TrendingRepository;
+import ru.practicum.ewm.stats.server.trending.DecayedScores;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// Затухающие счёты uri для каждого периода полураспада из stats.trending.half-lives. При хранении в БД каждый
+// экземпляр (stats.trending.instance) периодически сохраняет изменённые счёты в свои строки hit_trending_snapshot и
+// восстанавливает их при старте, хиты после последнего снимка при падении теряются. Ответ складывает свои счёты со
+// снимками остальных экземпляров, которые отстают не больше чем на snapshot-interval. Если снимков нет ни у кого, а
+// при хранении в сегментах на каждом старте, счёты заполняются по почасовым бакетам за warm-up
+@Service
+@Slf4j
+public class TrendingServiceImpl implements TrendingService {
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private final TrendingRepository trendingRepository;
+    private final WarmUpSource warmUpSource;
+    private final boolean enabled;
+    private final int maxN;
+    private final Duration warmUp;
+    private final String instance;
+    private final int maxUris;
+    private final Map<Duration, DecayedScores> scores = new LinkedHashMap<>();
+    private volatile Map<Duration, DecayedScores> others = Map.of();
+
+    public TrendingServiceImpl(ObjectProvider<TrendingRepository> trendingRepository, WarmUpSource warmUpSource,
+                               @Value("${stats.trending.enabled:true}") boolean enabled,
+                               @Value("${stats.trending.half-lives:PT1H,PT24H}") List<Duration> halfLives,
+                               @Value("${stats.trending.max-uris:100000}") int maxUris,
+                               @Value("${stats.trending.max-n:1000}") int maxN,
+                               @Value("${stats.trending.warm-up:P7D}") Duration warmUp,
+                               @Value("${stats.trending.instance:default}") String instance) {
+        this.trendingRepository = trendingRepository.getIfAvailable();
+        this.warmUpSource = warmUpSource;
+        this.enabled = enabled;
+        this.maxN = maxN;
+        this.warmUp = warmUp;
+        this.instance = instance;
+        this.maxUris = maxUris;
+        halfLives.forEach(halfLife -> scores.put(halfLife, new DecayedScores(halfLife.toSeconds(), maxUris)));
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        if (trendingRepository == null || trendingRepository.isEmpty()) {
+            warmUp();
+            return;
+        }
+        // Бакеты общие для всех экземпляров, поэтому новый экземпляр при чужих снимках начинает с пустых счётов
+        scores.forEach((halfLife, decayed) -> trendingRepository.forEachOwn(instance, halfLife.toSeconds(),
+                (key, logScore) -> decayed.restore(key.app(), key.uri(), logScore)));
+        loadOthers();
+        log.info("Счёты трендов экземпляра {} восстановлены из снимка, периодов полураспада: {}", instance,
+                scores.size());
+    }
+
+    @Override
+    public void add(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        for (EndpointHit hit : hits) {
+            // Хит из будущего считается текущим, иначе он навсегда завысит счёт
+            long second = Math.min(hit.getCreatedDate().toEpochSecond(ZoneOffset.UTC), now);
+            scores.values().forEach(decayed -> decayed.add(hit.getApp(), hit.getUri(), second, 1));
+        }
+    }
+
+    @Override
+    public List<TrendingDto> getTrending(String app, int n, Duration halfLife) {
+        if (!enabled) {
+            throw new ValidationException("Тренды отключены");
+        }
+        if (n < 1 || n > maxN) {
+            throw new ValidationException("n должно быть от 1 до " + maxN);
+        }
+        DecayedScores decayed = scores.get(halfLife);
+        if (decayed == null) {
+            throw new ValidationException("halfLife должен быть одним из " + scores.keySet());
+        }
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        return decayed.top(app, n, now, others.get(halfLife)).stream()
+                .map(score -> new TrendingDto(score.app(), score.uri(), score.score()))
+                .toList();
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.trending.snapshot-interval:PT1M}")
+    public void snapshot() {
+        if (!enabled || trendingRepository == null) {
+            return;
+        }
+        scores.forEach((halfLife, decayed) -> {
+            List<Map.Entry<AppUri, Double>> changed = new ArrayList<>();
+            List<AppUri> deleted = new ArrayList<>();
+            decayed.drainChanges((key, logScore) -> changed.add(Map.entry(key, logScore)), deleted::add);
+            try {
+                trendingRepository.replace(instance, halfLife.toSeconds(), changed, deleted);
+            } catch (RuntimeException e) {
+                log.error("Не удалось сохранить снимок трендов для halfLife {}, повторим позже", halfLife, e);
+                changed.forEach(entry -> decayed.markDirty(entry.getKey()));
+                deleted.forEach(decayed::markRemoved);
+            }
+        });
+        try {
+            loadOthers();
+        } catch (RuntimeException e) {
+            log.error("Не удалось загрузить снимки трендов других экземпляров, повторим позже", e);
+        }
+    }
+
+    // Строки одного uri от нескольких экземпляров складываются в restore
+    private void loadOthers() {
+        Map<Duration, DecayedScores> loaded = new HashMap<>();
+        scores.keySet().forEach(halfLife -> {
+            DecayedScores decayed = new DecayedScores(halfLife.toSeconds(), maxUris);
+            trendingRepository.forEachOther(instance, halfLife.toSeconds(), (key, logScore) ->
+                    decayed.restore(key.app(), key.uri(), logScore));
+            loaded.put(halfLife, decayed);
+        });
+        others = loaded;
+    }
+
+    // Хиты часа считаются пришедшими в его середину
+    private void warmUp() {
+        if (!warmUpSource.hasBuckets()) {
+            return;
+        }
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = RollupGranularity.HOUR.floor(to.minus(warmUp));
+        long now = to.toEpochSecond(ZoneOffset.UTC);
+        warmUpSource.forEachBucket(RollupGranularity.HOUR, from, to, (key, hits) -> {
+            long second = Math.min(key.bucket().toEpochSecond(ZoneOffset.UTC) + SECONDS_PER_HOUR / 2, now);
+            scores.values().forEach(decayed -> decayed.add(key.app(), key.uri(), second, hits));
+        });
+        log.info("Счёты трендов заполнены по почасовым бакетам с {}", from);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.dto.StatsDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UriIndexService {
+
+    void add(Collection<String> uris);
+
+    boolean hasPatterns(List<String> uris);
+
+    List<String> expand(List<String> uris);
+
+    List<StatsDto> aggregate(List<StatsDto> stats, List<String> uris);
+}
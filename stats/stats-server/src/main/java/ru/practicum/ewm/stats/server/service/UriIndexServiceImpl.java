@@ -0,0 +1,107 @@
+package ru.practicum.ewm.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.stats.dto.StatsDto;
+import ru.practicum.ewm.stats.server.index.UriTrie;
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.*;
+
+// Раскрывает шаблоны uri в запросах статистики по дереву известных uri. Дерево заполняется по словарю
+// (hit_uri или ключи сегментов) при старте, пополняется при записи хитов и раз в refresh-interval дочитывает
+// из словаря uri, записанные другими экземплярами. Если оно упёрлось в max-uris или шаблон в нём ничего не
+// нашёл, шаблон раскрывается по словарю
+@Service
+@Slf4j
+public class UriIndexServiceImpl implements UriIndexService {
+    // id словаря выдаются до фиксации вставки, поэтому последние номера перечитываются на случай пропуска
+    private static final long REFRESH_OVERLAP = 1000;
+
+    private final WarmUpSource warmUpSource;
+    private final UriTrie trie;
+    private volatile boolean complete = true;
+    private long lastUriId;
+
+    public UriIndexServiceImpl(WarmUpSource warmUpSource,
+                               @Value("${stats.uri-index.max-uris:1000000}") int maxUris) {
+        this.warmUpSource = warmUpSource;
+        this.trie = new UriTrie(maxUris);
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        refresh();
+        log.info("Индекс uri заполнен по словарю: {} uri{}", trie.size(), complete ? "" : ", индекс переполнен");
+    }
+
+    @Scheduled(fixedDelayString = "${stats.uri-index.refresh-interval:PT1M}",
+            initialDelayString = "${stats.uri-index.refresh-interval:PT1M}")
+    public synchronized void refresh() {
+        lastUriId = warmUpSource.forEachUri(Math.max(0, lastUriId - REFRESH_OVERLAP), uri -> add(List.of(uri)));
+    }
+
+    @Override
+    public void add(Collection<String> uris) {
+        for (String uri : uris) {
+            if (!trie.add(uri) && complete) {
+                complete = false;
+                log.warn("Индекс uri переполнен, шаблоны будут раскрываться по словарю");
+            }
+        }
+    }
+
+    @Override
+    public boolean hasPatterns(List<String> uris) {
+        return uris.stream().anyMatch(UriTrie::isPattern);
+    }
+
+    @Override
+    public List<String> expand(List<String> uris) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (!UriTrie.isPattern(uri)) {
+                result.add(uri);
+                continue;
+            }
+            List<String> matched = complete ? trie.match(uri) : List.of();
+            if (matched.isEmpty()) {
+                matched = warmUpSource.findUrisByPrefix(literalPrefix(uri)).stream()
+                        .filter(name -> UriTrie.matches(uri, name))
+                        .toList();
+            }
+            result.addAll(matched);
+        }
+        return List.copyOf(result);
+    }
+
+    // Строки сворачиваются по app и первому подходящему элементу запроса, без uri — по app.
+    // Для unique это сумма уникальных ip по каждому uri, а не число уникальных ip по всем uri шаблона
+    @Override
+    public List<StatsDto> aggregate(List<StatsDto> stats, List<String> uris) {
+        List<String> groups = uris.isEmpty() ? List.of(UriTrie.ANY_SUFFIX) : uris;
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (StatsDto dto : stats) {
+            groups.stream()
+                    .filter(uri -> covers(uri, dto.getUri()))
+                    .findFirst()
+                    .ifPresent(uri -> hits.merge(new AppUri(dto.getApp(), uri), dto.getHits(), Long::sum));
+        }
+        return hits.entrySet().stream()
+                .map(entry -> new StatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    private static boolean covers(String requested, String uri) {
+        return UriTrie.isPattern(requested) ? UriTrie.matches(requested, uri) : requested.equals(uri);
+    }
+
+    private static String literalPrefix(String pattern) {
+        int wildcard = pattern.indexOf(UriTrie.ANY_SEGMENT);
+        return pattern.substring(0, wildcard);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.ewm.stats.server.service;
+
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.RollupKey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+// Откуда сервисы в памяти (индекс uri, сводки самых посещаемых uri, тренды) берут состояние при старте:
+// из словаря и агрегатов БД или из сегментных файлов, в зависимости от stats.storage
+public interface WarmUpSource {
+
+    boolean hasBuckets();
+
+    void forEachBucket(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                       ObjLongConsumer<RollupKey> consumer);
+
+    // Uri с номером в словаре больше afterId, возвращает наибольший прочитанный номер или afterId
+    long forEachUri(long afterId, Consumer<String> consumer);
+
+    List<String> findUrisByPrefix(String prefix);
+}
@@ -0,0 +1,41 @@
+package ru.practicum.ewm.stats.server.service;
+
+import lombok.experimental.UtilityClass;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.TimeSegment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Разбивает полуинтервал [from, to) на выровненные бакеты агрегатов (от крупных к мелким) и сырые края
+@UtilityClass
+public class WindowPlanner {
+
+    public List<TimeSegment> plan(LocalDateTime from, LocalDateTime to, List<RollupGranularity> coarsestFirst) {
+        List<TimeSegment> segments = new ArrayList<>();
+        split(from, to, coarsestFirst, 0, segments);
+        return segments;
+    }
+
+    private void split(LocalDateTime from, LocalDateTime to, List<RollupGranularity> granularities, int level,
+                       List<TimeSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == granularities.size()) {
+            segments.add(new TimeSegment(null, from, to));
+            return;
+        }
+        RollupGranularity granularity = granularities.get(level);
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (alignedFrom.isBefore(alignedTo)) {
+            split(from, alignedFrom, granularities, level + 1, segments);
+            segments.add(new TimeSegment(granularity, alignedFrom, alignedTo));
+            split(alignedTo, to, granularities, level + 1, segments);
+        } else {
+            split(from, to, granularities, level + 1, segments);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.ewm.stats.server.sketch;
+
+import java.io.ByteArrayOutputStream;
+
+// HyperLogLog на 2^12 регистров. Стандартная ошибка оценки 1.04 / sqrt(4096) ≈ 1.6%,
+// примерно в 95% случаев ошибка не превышает 3.3%. Скетчи объединяются без потерь (максимум по регистрам),
+// поэтому повторное слияние одного и того же скетча не искажает оценку. Класс не потокобезопасен.
+public class HyperLogLog {
+    public static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    // Сырая оценка смещена вверх почти до 3 * REGISTERS, поэтому граница линейного счёта проверяется по его
+    // собственной оценке: при 2.5 * REGISTERS по сырой ошибка около 10 тысяч элементов доходила до 3%
+    private static final double LINEAR_COUNTING_LIMIT = 2.7 * REGISTERS;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        if (zeros > 0) {
+            double linear = REGISTERS * Math.log((double) REGISTERS / zeros);
+            if (linear <= LINEAR_COUNTING_LIMIT) {
+                return Math.round(linear);
+            }
+        }
+        return Math.round(ALPHA * REGISTERS * REGISTERS / sum);
+    }
+
+    // Разреженный формат (индекс + значение) для малых множеств, плотный — массив регистров
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (used * 3 >= REGISTERS) {
+            byte[] result = new byte[REGISTERS + 1];
+            result[0] = DENSE;
+            System.arraycopy(registers, 0, result, 1, REGISTERS);
+            return result;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(used * 3 + 1);
+        out.write(SPARSE);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                out.write(i >>> 8);
+                out.write(i);
+                out.write(registers[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes[0] == DENSE) {
+            System.arraycopy(bytes, 1, sketch.registers, 0, REGISTERS);
+        } else {
+            for (int i = 1; i + 2 < bytes.length; i += 3) {
+                int index = ((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF);
+                sketch.registers[index] = bytes[i + 2];
+            }
+        }
+        return sketch;
+    }
+
+    // FNV-1a с финализатором MurmurHash3 для равномерного распределения старших битов
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e87a3L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,151 @@
+package ru.practicum.ewm.stats.server.sketch;
+
+import java.util.*;
+
+// Space-Saving на capacity счётчиков: каждый элемент с частотой больше total / capacity гарантированно
+// присутствует, оценка завышена не более чем на error элемента. Счётчики хранятся в индексированной
+// минимальной куче, поэтому добавление стоит O(log capacity). Класс не потокобезопасен.
+public class SpaceSaving {
+    private final int capacity;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private String[] items = new String[8];
+    private long[] counts = new long[8];
+    private long[] errors = new long[8];
+    private int size;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(String item, long weight) {
+        total += weight;
+        Integer position = positions.get(item);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            ensureCapacity();
+            items[size] = item;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(item, size);
+            siftUp(size++);
+            return;
+        }
+        // вытесняется минимальный счётчик, его значение становится погрешностью нового элемента
+        positions.remove(items[0]);
+        errors[0] = counts[0];
+        counts[0] += weight;
+        items[0] = item;
+        positions.put(item, 0);
+        siftDown(0);
+    }
+
+    // Отсутствие элемента в одной из сводок учитывается как ноль, погрешность суммируется по сводкам
+    public static List<Entry> top(Collection<SpaceSaving> summaries, int n) {
+        PriorityQueue<Entry> best = new PriorityQueue<>(Comparator.comparingLong(Entry::count));
+        collect(summaries).forEach((item, value) -> {
+            best.add(new Entry(item, value[0], value[1]));
+            if (best.size() > n) {
+                best.poll();
+            }
+        });
+        List<Entry> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingLong(Entry::count).reversed());
+        return result;
+    }
+
+    // Сводка объединения на capacity счётчиков из capacity самых частых элементов сводок, как в top
+    public static SpaceSaving merge(Collection<SpaceSaving> summaries, int capacity) {
+        SpaceSaving result = new SpaceSaving(capacity);
+        for (Entry entry : top(summaries, capacity)) {
+            result.ensureCapacity();
+            result.items[result.size] = entry.item();
+            result.counts[result.size] = entry.count();
+            result.errors[result.size] = entry.error();
+            result.positions.put(entry.item(), result.size);
+            result.siftUp(result.size++);
+        }
+        summaries.forEach(summary -> result.total += summary.total);
+        return result;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static Map<String, long[]> collect(Collection<SpaceSaving> summaries) {
+        Map<String, long[]> merged = new HashMap<>();
+        for (SpaceSaving summary : summaries) {
+            for (int i = 0; i < summary.size; i++) {
+                long[] value = merged.computeIfAbsent(summary.items[i], k -> new long[2]);
+                value[0] += summary.counts[i];
+                value[1] += summary.errors[i];
+            }
+        }
+        return merged;
+    }
+
+    private void ensureCapacity() {
+        if (size == items.length) {
+            int length = Math.min(capacity, items.length * 2);
+            items = Arrays.copyOf(items, length);
+            counts = Arrays.copyOf(counts, length);
+            errors = Arrays.copyOf(errors, length);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        positions.put(items[a], a);
+        positions.put(items[b], b);
+    }
+
+    public record Entry(String item, long count, long error) {
+    }
+}
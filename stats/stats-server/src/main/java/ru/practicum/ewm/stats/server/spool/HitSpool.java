@@ -0,0 +1,349 @@
+package ru.practicum.ewm.stats.server.spool;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.ewm.stats.server.exception.HitQueueOverflowException;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал предзаписи хитов: сегменты <номер>.wal из записей [длина][crc32c][хит]. Пакет считается принятым
+// после fsync, потоки, пришедшие во время fsync, ждут и фиксируются следующим одним вызовом (group commit).
+// При открытии недописанный хвост последнего сегмента отрезается по первой записи с неверной длиной или crc,
+// за которой нет ни одной целой записи. Повреждение посреди сегмента пропускается до следующей целой записи
+@Slf4j
+public class HitSpool implements Closeable {
+    private static final String SUFFIX = ".wal";
+    private static final int HEADER = 8;
+    // три строки writeUTF и время
+    private static final int MAX_PAYLOAD = 3 * (2 + 65_535) + 12;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxSize;
+    private final boolean fsync;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ConcurrentSkipListMap<Long, Long> sizes = new ConcurrentSkipListMap<>();
+    private final AtomicLong skippedBytes = new AtomicLong();
+    private FileChannel current;
+    private long currentSegment;
+    private long currentSize;
+    private long totalSize;
+    private volatile SpoolPosition durable;
+    // конец последнего учтённого пропуска, чтобы повторное чтение после сбоя переноса не считало его дважды
+    private volatile SpoolPosition skippedUntil = new SpoolPosition(0, 0);
+
+    public HitSpool(Path directory, long segmentSize, long maxSize, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                sizes.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), Files.size(file));
+            }
+        }
+        currentSegment = sizes.isEmpty() ? 1 : sizes.lastKey();
+        currentSize = sizes.isEmpty() ? 0 : recover(currentSegment);
+        current = FileChannel.open(pathOf(currentSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        current.truncate(currentSize);
+        current.position(currentSize);
+        current.force(true);
+        sizes.put(currentSegment, currentSize);
+        totalSize = sizes.values().stream().mapToLong(Long::longValue).sum();
+        durable = new SpoolPosition(currentSegment, currentSize);
+    }
+
+    public void append(List<EndpointHit> hits) {
+        ByteBuffer records = encode(hits);
+        SpoolPosition end;
+        writeLock.lock();
+        try {
+            if (totalSize + records.remaining() > maxSize) {
+                throw new HitQueueOverflowException("Журнал хитов переполнен");
+            }
+            if (currentSize > 0 && currentSize + records.remaining() > segmentSize) {
+                roll();
+            }
+            int length = records.remaining();
+            while (records.hasRemaining()) {
+                current.write(records);
+            }
+            currentSize += length;
+            totalSize += length;
+            sizes.put(currentSegment, currentSize);
+            end = new SpoolPosition(currentSegment, currentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать хиты в журнал", e);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(end);
+    }
+
+    public SpoolPosition getStart() {
+        return new SpoolPosition(sizes.firstKey(), 0);
+    }
+
+    public SpoolPosition getEnd() {
+        return durable;
+    }
+
+    // Читает только записи, уже зафиксированные fsync. Сегмент, прочитанный до конца, сменяется следующим
+    public SpoolBatch read(SpoolPosition from, int maxRecords) throws IOException {
+        SpoolPosition limit = durable;
+        SpoolPosition position = from;
+        Long first = sizes.firstKey();
+        if (position.segment() < first) {
+            position = new SpoolPosition(first, 0);
+        }
+        if (position.segment() < limit.segment()
+                && position.offset() >= sizes.getOrDefault(position.segment(), 0L)) {
+            position = new SpoolPosition(sizes.higherKey(position.segment()), 0);
+        }
+        long end = position.segment() == limit.segment() ? limit.offset() : sizes.get(position.segment());
+        List<EndpointHit> hits = new ArrayList<>();
+        long offset = position.offset();
+        if (offset >= end) {
+            return new SpoolBatch(hits, position);
+        }
+        try (FileChannel channel = FileChannel.open(pathOf(position.segment()), StandardOpenOption.READ)) {
+            DataInputStream in = streamAt(channel, offset);
+            while (offset < end && hits.size() < maxRecords) {
+                byte[] payload = readPayload(in, end - offset);
+                if (payload == null) {
+                    long next = resync(channel, offset + 1, end);
+                    skipped(new SpoolPosition(position.segment(), offset), next);
+                    offset = next;
+                    in = streamAt(channel, offset);
+                    continue;
+                }
+                offset += HEADER + payload.length;
+                hits.add(decode(payload));
+            }
+        }
+        return new SpoolBatch(hits, new SpoolPosition(position.segment(), offset));
+    }
+
+    // Удаляет сегменты, полностью перенесённые в БД
+    public void release(SpoolPosition checkpoint) throws IOException {
+        for (Map.Entry<Long, Long> segment : sizes.headMap(checkpoint.segment()).entrySet()) {
+            Files.deleteIfExists(pathOf(segment.getKey()));
+            writeLock.lock();
+            try {
+                sizes.remove(segment.getKey());
+                totalSize -= segment.getValue();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    public long getSkippedBytes() {
+        return skippedBytes.get();
+    }
+
+    public long size() {
+        writeLock.lock();
+        try {
+            return totalSize;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            current.force(true);
+            current.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void awaitDurable(SpoolPosition position) {
+        if (durable.compareTo(position) >= 0) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable.compareTo(position) >= 0) {
+                return;
+            }
+            FileChannel channel;
+            SpoolPosition target;
+            writeLock.lock();
+            try {
+                channel = current;
+                target = new SpoolPosition(currentSegment, currentSize);
+            } finally {
+                writeLock.unlock();
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            advanceDurable(target);
+        } catch (ClosedChannelException e) {
+            // сегмент закрыт переключением, которое уже выполнило для него fsync
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить журнал хитов на диск", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private synchronized void advanceDurable(SpoolPosition target) {
+        if (durable.compareTo(target) < 0) {
+            durable = target;
+        }
+    }
+
+    // Выполняется под writeLock
+    private void roll() throws IOException {
+        current.force(false);
+        advanceDurable(new SpoolPosition(currentSegment, currentSize));
+        current.close();
+        currentSegment++;
+        currentSize = 0;
+        current = FileChannel.open(pathOf(currentSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        sizes.put(currentSegment, 0L);
+    }
+
+    // Возвращает конец последней целой записи; всё после него — недописанный хвост
+    private long recover(long segment) throws IOException {
+        long size = sizes.get(segment);
+        long valid = 0;
+        try (FileChannel channel = FileChannel.open(pathOf(segment), StandardOpenOption.READ)) {
+            long offset = 0;
+            DataInputStream in = streamAt(channel, offset);
+            while (offset < size) {
+                byte[] payload = readPayload(in, size - offset);
+                if (payload == null) {
+                    offset = resync(channel, offset + 1, size);
+                    in = streamAt(channel, offset);
+                    continue;
+                }
+                offset += HEADER + payload.length;
+                valid = offset;
+            }
+        }
+        if (valid < size) {
+            log.warn("Недописанный хвост сегмента журнала {} отрезан на позиции {}", segment, valid);
+        }
+        return valid;
+    }
+
+    private void skipped(SpoolPosition from, long to) {
+        if (from.compareTo(skippedUntil) < 0) {
+            return;
+        }
+        skippedUntil = new SpoolPosition(from.segment(), to);
+        skippedBytes.addAndGet(to - from.offset());
+        log.error("Повреждённые данные в сегменте журнала {} на позициях [{}, {}) пропущены",
+                from.segment(), from.offset(), to);
+    }
+
+    // Ближайшая позиция не раньше from, с которой читается целая запись с верным crc, иначе end
+    private static long resync(FileChannel channel, long from, long end) throws IOException {
+        if (end - from <= HEADER) {
+            return end;
+        }
+        ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, from, end - from);
+        for (int candidate = 0; candidate + HEADER < region.limit(); candidate++) {
+            int length = region.getInt(candidate);
+            if (length > 0 && length <= MAX_PAYLOAD && length <= region.limit() - candidate - HEADER) {
+                CRC32C crc = new CRC32C();
+                crc.update(region.slice(candidate + HEADER, length));
+                if ((int) crc.getValue() == region.getInt(candidate + 4)) {
+                    return from + candidate;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static DataInputStream streamAt(FileChannel channel, long offset) throws IOException {
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    }
+
+    private static byte[] readPayload(DataInputStream in, long available) throws IOException {
+        if (available < HEADER) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0 || length > MAX_PAYLOAD || length > available - HEADER) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+
+    private static EndpointHit decode(byte[] payload) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        return EndpointHit.builder()
+                .app(record.readUTF())
+                .uri(record.readUTF())
+                .ip(record.readUTF())
+                .createdDate(LocalDateTime.ofEpochSecond(record.readLong(), record.readInt(), ZoneOffset.UTC))
+                .build();
+    }
+
+    private static ByteBuffer encode(List<EndpointHit> hits) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(records);
+            for (EndpointHit hit : hits) {
+                byte[] payload = payloadOf(hit);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(records.toByteArray());
+    }
+
+    private static byte[] payloadOf(EndpointHit hit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(hit.getApp());
+        out.writeUTF(hit.getUri());
+        out.writeUTF(hit.getIp());
+        out.writeLong(hit.getCreatedDate().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(hit.getCreatedDate().getNano());
+        return bytes.toByteArray();
+    }
+
+    private Path pathOf(long segment) {
+        return directory.resolve(String.format("%020d", segment) + SUFFIX);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ewm.stats.server.spool;
+
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.util.List;
+
+public record SpoolBatch(List<EndpointHit> hits, SpoolPosition next) {
+}
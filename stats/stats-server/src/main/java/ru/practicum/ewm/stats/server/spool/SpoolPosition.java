@@ -0,0 +1,13 @@
+package ru.practicum.ewm.stats.server.spool;
+
+import java.util.Comparator;
+
+public record SpoolPosition(long segment, long offset) implements Comparable<SpoolPosition> {
+    private static final Comparator<SpoolPosition> ORDER = Comparator.comparingLong(SpoolPosition::segment)
+            .thenComparingLong(SpoolPosition::offset);
+
+    @Override
+    public int compareTo(SpoolPosition other) {
+        return ORDER.compare(this, other);
+    }
+}
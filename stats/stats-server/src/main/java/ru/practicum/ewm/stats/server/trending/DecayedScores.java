@@ -0,0 +1,149 @@
+package ru.practicum.ewm.stats.server.trending;
+
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Экспоненциально затухающие счёты uri с общим периодом полураспада. Хранится логарифм суммы exp(λ·t) по хитам,
+// поэтому хит добавляется за O(1) без пересчёта остальных, а счёт на момент now равен exp(logScore − λ·now).
+// Порядок uri от now не зависит, и топ строится прямо по logScore
+public class DecayedScores {
+    private final double lambda;
+    private final int maxSize;
+    private final Map<String, Map<String, Double>> apps = new ConcurrentHashMap<>();
+    private final Set<AppUri> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<AppUri> removed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public DecayedScores(long halfLifeSeconds, int maxSize) {
+        this.lambda = Math.log(2) / halfLifeSeconds;
+        this.maxSize = maxSize;
+    }
+
+    public void add(String app, String uri, long epochSecond, long weight) {
+        merge(app, uri, lambda * epochSecond + Math.log(weight));
+        if (size.get() > maxSize + maxSize / 10) {
+            prune();
+        }
+    }
+
+    public void restore(String app, String uri, double logScore) {
+        merge(app, uri, logScore);
+        dirty.remove(new AppUri(app, uri));
+    }
+
+    public List<TrendingScore> top(String app, int n, long nowSecond) {
+        return top(app, n, nowSecond, null);
+    }
+
+    // Топ по сумме счётов этого набора и other с тем же периодом полураспада (снимков других экземпляров)
+    public List<TrendingScore> top(String app, int n, long nowSecond, DecayedScores other) {
+        PriorityQueue<Map.Entry<AppUri, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        Set<String> selected = new HashSet<>(app == null ? apps.keySet() : List.of(app));
+        if (other != null && app == null) {
+            selected.addAll(other.apps.keySet());
+        }
+        for (String name : selected) {
+            Map<String, Double> own = apps.getOrDefault(name, Map.of());
+            Map<String, Double> theirs = other == null ? Map.of() : other.apps.getOrDefault(name, Map.of());
+            for (Map.Entry<String, Double> entry : own.entrySet()) {
+                Double their = theirs.get(entry.getKey());
+                offer(best, n, new AppUri(name, entry.getKey()),
+                        their == null ? entry.getValue() : logSumExp(entry.getValue(), their));
+            }
+            for (Map.Entry<String, Double> entry : theirs.entrySet()) {
+                if (!own.containsKey(entry.getKey())) {
+                    offer(best, n, new AppUri(name, entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        List<TrendingScore> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Map.Entry<AppUri, Double> entry = best.poll();
+            result.add(new TrendingScore(entry.getKey().app(), entry.getKey().uri(),
+                    Math.exp(entry.getValue() - lambda * nowSecond)));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // Изменённые с прошлого снимка и вытесненные ключи; наборы очищаются
+    public void drainChanges(BiConsumer<AppUri, Double> changed, Consumer<AppUri> deleted) {
+        for (AppUri key : List.copyOf(dirty)) {
+            dirty.remove(key);
+            Double logScore = apps.getOrDefault(key.app(), Map.of()).get(key.uri());
+            if (logScore != null) {
+                changed.accept(key, logScore);
+            }
+        }
+        for (AppUri key : List.copyOf(removed)) {
+            removed.remove(key);
+            deleted.accept(key);
+        }
+    }
+
+    // Возвращает ключи в наборы изменений после неудачного снимка
+    public void markDirty(AppUri key) {
+        if (apps.getOrDefault(key.app(), Map.of()).containsKey(key.uri())) {
+            dirty.add(key);
+        }
+    }
+
+    public void markRemoved(AppUri key) {
+        if (!apps.getOrDefault(key.app(), Map.of()).containsKey(key.uri())) {
+            removed.add(key);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private static void offer(PriorityQueue<Map.Entry<AppUri, Double>> best, int n, AppUri key, double logScore) {
+        best.add(Map.entry(key, logScore));
+        if (best.size() > n) {
+            best.poll();
+        }
+    }
+
+    private void merge(String app, String uri, double logScore) {
+        apps.computeIfAbsent(app, key -> new ConcurrentHashMap<>()).compute(uri, (key, current) -> {
+            if (current == null) {
+                size.incrementAndGet();
+                return logScore;
+            }
+            return logSumExp(current, logScore);
+        });
+        AppUri key = new AppUri(app, uri);
+        dirty.add(key);
+        removed.remove(key);
+    }
+
+    // Вытесняет десятую часть самых слабых счётов, чтобы не делать это на каждом новом uri
+    private synchronized void prune() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        List<Map.Entry<AppUri, Double>> entries = new ArrayList<>();
+        apps.forEach((app, uris) -> uris.forEach((uri, logScore) ->
+                entries.add(Map.entry(new AppUri(app, uri), logScore))));
+        entries.sort(Map.Entry.comparingByValue());
+        int excess = entries.size() - maxSize + maxSize / 10;
+        for (Map.Entry<AppUri, Double> entry : entries.subList(0, Math.min(excess, entries.size()))) {
+            if (apps.get(entry.getKey().app()).remove(entry.getKey().uri()) != null) {
+                size.decrementAndGet();
+                dirty.remove(entry.getKey());
+                removed.add(entry.getKey());
+            }
+        }
+    }
+
+    private static double logSumExp(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.ewm.stats.server.trending;
+
+public record TrendingScore(String app, String uri, double score) {
+}
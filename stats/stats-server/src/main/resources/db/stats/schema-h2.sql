@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS endpoint_hit(
+  hit_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  app_id INTEGER NOT NULL REFERENCES hit_app(app_id),
+  uri_id INTEGER NOT NULL REFERENCES hit_uri(uri_id),
+  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  ip BYTEA NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_created_date_idx ON endpoint_hit(created_date);
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS endpoint_hit(
+  hit_id BIGSERIAL,
+  app_id INTEGER NOT NULL REFERENCES hit_app(app_id),
+  uri_id INTEGER NOT NULL REFERENCES hit_uri(uri_id),
+  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  ip BYTEA NOT NULL,
+  PRIMARY KEY (hit_id, created_date)
+) PARTITION BY RANGE (created_date);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_default PARTITION OF endpoint_hit DEFAULT;
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_created_date_idx ON endpoint_hit(created_date);
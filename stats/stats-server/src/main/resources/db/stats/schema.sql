@@ -0,0 +1,89 @@
+CREATE TABLE IF NOT EXISTS hit_app(
+  app_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR(100) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hit_uri(
+  uri_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollup_minute(
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  hits BIGINT NOT NULL,
+  PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollup_hour(
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  hits BIGINT NOT NULL,
+  PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollup_day(
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  hits BIGINT NOT NULL,
+  PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_sketch_hour(
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  registers BYTEA NOT NULL,
+  PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_sketch_day(
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  registers BYTEA NOT NULL,
+  PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_total(
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  hits BIGINT NOT NULL,
+  first_hit TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  last_hit TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  PRIMARY KEY (app, uri)
+);
+
+CREATE INDEX IF NOT EXISTS hit_total_uri_idx ON hit_total(uri);
+
+CREATE TABLE IF NOT EXISTS hit_sketch_total(
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  registers BYTEA NOT NULL,
+  PRIMARY KEY (app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_retention(
+  app VARCHAR(100) NOT NULL PRIMARY KEY,
+  compacted_before TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hit_spool_checkpoint(
+  spool_id VARCHAR(100) NOT NULL PRIMARY KEY,
+  segment BIGINT NOT NULL,
+  position BIGINT NOT NULL
+);
+
+DROP TABLE IF EXISTS hit_trending;
+
+CREATE TABLE IF NOT EXISTS hit_trending_snapshot(
+  instance VARCHAR(100) NOT NULL,
+  half_life_seconds BIGINT NOT NULL,
+  app VARCHAR(100) NOT NULL,
+  uri VARCHAR NOT NULL,
+  log_score DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (instance, half_life_seconds, app, uri)
+);
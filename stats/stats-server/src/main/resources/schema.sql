@@ -1,8 +0,0 @@
-CREATE TABLE IF NOT EXISTS hit(
-  hit_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-  app VARCHAR(100) NOT NULL,
-  uri VARCHAR NOT NULL,
-  ip VARCHAR(20) NOT NULL,
-  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL
-);
-
@@ -0,0 +1,103 @@
+package ru.practicum.ewm.stats.server.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriTrieTest {
+
+    @Test
+    void singleSegmentWildcardMatchesExactlyOneSegment() {
+        UriTrie trie = trieOf("/events", "/events/1", "/events/2", "/events/1/comments", "/users/1");
+
+        assertThat(trie.match("/events/*")).containsExactlyInAnyOrder("/events/1", "/events/2");
+        assertThat(trie.match("/*/1")).containsExactlyInAnyOrder("/events/1", "/users/1");
+        assertThat(trie.match("/events/*/comments")).containsExactly("/events/1/comments");
+    }
+
+    @Test
+    void trailingSuffixWildcardMatchesAnyContinuationIncludingEmpty() {
+        UriTrie trie = trieOf("/events", "/events/1", "/events/1/comments", "/eventsx", "/users/1");
+
+        assertThat(trie.match("/events/**"))
+                .containsExactlyInAnyOrder("/events", "/events/1", "/events/1/comments");
+        assertThat(trie.match("/**")).hasSize(5);
+        assertThat(UriTrie.matches("/events/**", "/events")).isTrue();
+        assertThat(UriTrie.matches("/events/**", "/eventsx")).isFalse();
+    }
+
+    @Test
+    void onlyWholeSegmentsArePatterns() {
+        assertThat(UriTrie.isPattern("/events/*")).isTrue();
+        assertThat(UriTrie.isPattern("/events/**")).isTrue();
+        assertThat(UriTrie.isPattern("/events/1*")).isFalse();
+        assertThat(UriTrie.isPattern("/events/1")).isFalse();
+        assertThat(trieOf("/events/1*", "/events/12").match("/events/1*")).containsExactly("/events/1*");
+    }
+
+    @Test
+    void suffixWildcardInTheMiddleIsLiteral() {
+        UriTrie trie = trieOf("/a/b/c", "/a/**/c");
+
+        assertThat(trie.match("/a/**/c")).containsExactly("/a/**/c");
+        assertThat(UriTrie.matches("/a/**/c", "/a/b/c")).isFalse();
+    }
+
+    @Test
+    void refusesNewUrisWhenFull() {
+        UriTrie trie = new UriTrie(2);
+
+        assertThat(trie.add("/a")).isTrue();
+        assertThat(trie.add("/b")).isTrue();
+        assertThat(trie.add("/a")).isTrue();
+        assertThat(trie.add("/c")).isFalse();
+        assertThat(trie.size()).isEqualTo(2);
+        assertThat(trie.match("/*")).containsExactlyInAnyOrder("/a", "/b");
+    }
+
+    @Test
+    void prefixOfKnownUriIsNotKnownItself() {
+        UriTrie trie = trieOf("/events/1/comments");
+
+        assertThat(trie.match("/events/*")).isEmpty();
+        assertThat(trie.add("/events/1")).isTrue();
+        assertThat(trie.size()).isEqualTo(2);
+        assertThat(trie.match("/events/*")).containsExactly("/events/1");
+    }
+
+    // Обход дерева должен давать то же, что проверка каждого uri по шаблону
+    @Test
+    void matchAgreesWithBruteForce() {
+        Random random = new Random(3);
+        String[] words = {"events", "users", "comments", "1", "2", "3", "admin"};
+        List<String> uris = new ArrayList<>();
+        UriTrie trie = new UriTrie(100_000);
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder uri = new StringBuilder();
+            for (int depth = 1 + random.nextInt(4); depth > 0; depth--) {
+                uri.append('/').append(words[random.nextInt(words.length)]);
+            }
+            if (trie.add(uri.toString()) && !uris.contains(uri.toString())) {
+                uris.add(uri.toString());
+            }
+        }
+        List<String> patterns = List.of("/*", "/events/*", "/*/1", "/*/*/comments", "/users/**", "/**",
+                "/*/2/**", "/admin/*/*/*", "/events/**/1");
+        for (String pattern : patterns) {
+            List<String> expected = uris.stream().filter(uri -> UriTrie.matches(pattern, uri)).toList();
+            assertThat(trie.match(pattern)).as(pattern).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private static UriTrie trieOf(String... uris) {
+        UriTrie trie = new UriTrie(1_000);
+        for (String uri : uris) {
+            trie.add(uri);
+        }
+        return trie;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.ewm.stats.server.mapper;
+
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpCodecTest {
+
+    @Test
+    void ipv4IsStoredInFourBytes() {
+        byte[] stored = IpCodec.encode("192.168.0.255");
+
+        assertThat(stored).containsExactly(192, 168, 0, 255);
+        assertThat(IpCodec.isAddress(stored)).isTrue();
+        assertThat(IpCodec.decode(stored)).isEqualTo("192.168.0.255");
+    }
+
+    @Test
+    void ipv4IsNormalized() {
+        assertThat(IpCodec.normalize("010.001.000.009")).isEqualTo("10.1.0.9");
+        assertThat(IpCodec.normalize("0.0.0.0")).isEqualTo("0.0.0.0");
+    }
+
+    @Test
+    void ipv6IsStoredInSixteenBytesInCanonicalForm() {
+        byte[] stored = IpCodec.encode("2001:DB8::1");
+
+        assertThat(stored).hasSize(16);
+        assertThat(IpCodec.decode(stored)).isEqualTo("2001:db8:0:0:0:0:0:1");
+        assertThat(IpCodec.normalize("2001:db8:0:0:0:0:0:1")).isEqualTo(IpCodec.normalize("2001:db8::1"));
+        assertThat(IpCodec.normalize("::ffff:10.0.0.1")).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    void everyIpv4RoundTrips() {
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            String ip = random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "."
+                    + random.nextInt(256);
+            assertThat(IpCodec.decode(IpCodec.encode(ip))).isEqualTo(ip);
+        }
+    }
+
+    @Test
+    void nonAddressIsKeptAsIs() {
+        for (String value : new String[]{"1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "localhost", "a:b",
+                "unknown", "адрес"}) {
+            byte[] stored = IpCodec.encode(value);
+            assertThat(IpCodec.isAddress(stored)).as(value).isFalse();
+            assertThat(stored[0]).as(value).isZero();
+            assertThat(IpCodec.decode(stored)).as(value).isEqualTo(value);
+        }
+    }
+
+    // Текст длиной 3 или 15 байт без дополнения совпал бы по длине с адресом
+    @Test
+    void rawValueNeverHasAddressLength() {
+        for (String value : new String[]{"abc", "abcdefghijklmno", "ab", "abcd"}) {
+            byte[] stored = IpCodec.encode(value);
+            assertThat(stored.length).as(value).isNotIn(4, 16);
+            assertThat(IpCodec.decode(stored)).as(value).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void rejectsMissingBlankAndNulValues() {
+        assertThat(IpCodec.isValid(null)).isFalse();
+        assertThat(IpCodec.isValid(" ")).isFalse();
+        assertThat(IpCodec.isValid("1.2.3.4\0")).isFalse();
+        assertThat(IpCodec.isValid("1.2.3.4")).isTrue();
+        assertThatThrownBy(() -> IpCodec.encode("")).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsCorruptStoredValue() {
+        assertThatThrownBy(() -> IpCodec.decode(new byte[]{1, 2})).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> IpCodec.decode(new byte[]{0})).isInstanceOf(IllegalStateException.class);
+    }
+}
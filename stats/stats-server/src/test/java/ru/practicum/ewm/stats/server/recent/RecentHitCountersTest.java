@@ -0,0 +1,134 @@
+package ru.practicum.ewm.stats.server.recent;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentHitCountersTest {
+    // не кратно минуте, чтобы границы минут приходились на середину горизонта
+    private static final long START = 1_790_000_017L;
+    private static final AppUri A = new AppUri("app", "/a");
+    private static final AppUri B = new AppUri("app", "/b");
+
+    @Test
+    void sumsAcrossMinuteBoundaries() {
+        RecentHitCounters counters = new RecentHitCounters(120, 30, 100, START);
+        long minute = (START / 60 + 1) * 60;
+        long now = minute + 100;
+        for (long second : new long[]{minute - 1, minute, minute + 59, minute + 60, minute + 61, now}) {
+            counters.add(A, second, now, now);
+        }
+        counters.add(B, minute + 30, now, now);
+
+        assertThat(counters.sum(minute, minute + 59, Set.of(), now)).isEqualTo(Map.of(A, 2L, B, 1L));
+        assertThat(counters.sum(minute - 1, minute, Set.of(), now)).isEqualTo(Map.of(A, 2L));
+        assertThat(counters.sum(minute + 59, minute + 60, Set.of("/a"), now)).isEqualTo(Map.of(A, 2L));
+        assertThat(counters.sum(minute, now + 100, Set.of("/a"), now)).isEqualTo(Map.of(A, 5L));
+        assertThat(counters.sum(minute + 62, now - 1, Set.of(), now)).isEmpty();
+    }
+
+    // Хиты той же секунды, что и старт, могли быть записаны до него, поэтому полнота начинается со следующей
+    @Test
+    void windowBeforeWatermarkIsNotAnswered() {
+        RecentHitCounters counters = new RecentHitCounters(120, 30, 100, START);
+        counters.add(A, START, START + 5, START + 5);
+        counters.add(A, START + 1, START + 5, START + 5);
+
+        assertThat(counters.sum(START, START + 5, Set.of(), START + 5)).isNull();
+        assertThat(counters.sum(START + 1, START + 5, Set.of(), START + 5)).isEqualTo(Map.of(A, 1L));
+    }
+
+    // Вытесненный uri уносит свои хиты, граница полноты сдвигается за его последний хит
+    @Test
+    void evictionMovesWatermarkPastVictim() {
+        RecentHitCounters counters = new RecentHitCounters(120, 30, 2, START);
+        long now = START + 100;
+        counters.add(A, START + 10, now, now);
+        counters.add(B, START + 20, now, now);
+        counters.add(new AppUri("app", "/c"), START + 30, now, now);
+
+        assertThat(counters.evicted()).isEqualTo(1);
+        assertThat(counters.sum(START + 10, now, Set.of(), now)).isNull();
+        assertThat(counters.sum(START + 11, now, Set.of(), now))
+                .isEqualTo(Map.of(B, 1L, new AppUri("app", "/c"), 1L));
+    }
+
+    @Test
+    void hitsBeyondAcceptedSecondMakeTheirWindowUnanswerable() {
+        RecentHitCounters counters = new RecentHitCounters(120, 30, 100, START);
+        long now = START + 100;
+        counters.add(A, START + 50, now, now);
+        counters.add(A, now + 30, now, now + 2);
+
+        assertThat(counters.sum(START + 40, now + 40, Set.of(), now)).isNull();
+        assertThat(counters.sum(START + 40, now + 10, Set.of(), now)).isEqualTo(Map.of(A, 1L));
+    }
+
+    // Любой ответ из памяти совпадает с прямым подсчётом по всем хитам, включая опоздавшие и отклонённые
+    @Test
+    void answersMatchBruteForce() {
+        // 6000 запросов; при вытеснении граница полноты почти всё время у текущей секунды
+        assertThat(checkAgainstBruteForce(1_000, 1)).isGreaterThan(1_000);
+        assertThat(checkAgainstBruteForce(12, 2)).isGreaterThan(50);
+    }
+
+    private static int checkAgainstBruteForce(int maxKeys, long seed) {
+        Random random = new Random(seed);
+        RecentHitCounters counters = new RecentHitCounters(120, 30, maxKeys, START);
+        List<AppUri> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            keys.add(new AppUri(i % 3 == 0 ? "other" : "app", "/u" + i));
+        }
+        List<AppUri> hitKeys = new ArrayList<>();
+        List<Long> hitSeconds = new ArrayList<>();
+        long now = START;
+        int answered = 0;
+        for (int step = 0; step < 3_000; step++) {
+            now += random.nextInt(4);
+            for (int i = random.nextInt(5); i > 0; i--) {
+                AppUri key = keys.get(Math.min(random.nextInt(20), random.nextInt(20)));
+                // опережающие хиты только в начале: отклонённый хит закрывает окна, пока не выйдет за горизонт
+                boolean ahead = step < 300 && random.nextInt(10) == 0;
+                long second = ahead ? now + 1 + random.nextInt(5) : now - random.nextInt(90);
+                counters.add(key, second, now, now + 2);
+                hitKeys.add(key);
+                hitSeconds.add(second);
+            }
+            for (int q = 0; q < 2; q++) {
+                long start = now - random.nextInt(2_000);
+                if (random.nextBoolean()) {
+                    start -= Math.floorMod(start, 60);
+                }
+                long end = switch (random.nextInt(3)) {
+                    case 0 -> now + random.nextInt(10);
+                    case 1 -> start + random.nextInt(200);
+                    default -> start + 60 * random.nextInt(30) - Math.floorMod(start, 60) + 59;
+                };
+                Set<String> uris = random.nextBoolean() ? Set.of() : Set.of("/u0", "/u1", "/u5");
+                Map<AppUri, Long> sum = counters.sum(start, end, uris, now);
+                if (sum == null) {
+                    continue;
+                }
+                answered++;
+                Map<AppUri, Long> expected = new HashMap<>();
+                for (int h = 0; h < hitKeys.size(); h++) {
+                    long second = hitSeconds.get(h);
+                    AppUri key = hitKeys.get(h);
+                    if (second >= start && second <= end && (uris.isEmpty() || uris.contains(key.uri()))) {
+                        expected.merge(key, 1L, Long::sum);
+                    }
+                }
+                assertThat(sum).as("step %d [%d, %d] %s", step, start, end, uris).isEqualTo(expected);
+            }
+        }
+        return answered;
+    }
+}
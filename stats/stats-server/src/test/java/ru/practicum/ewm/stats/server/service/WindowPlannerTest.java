@@ -0,0 +1,92 @@
+package ru.practicum.ewm.stats.server.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.server.enums.RollupGranularity;
+import ru.practicum.ewm.stats.server.model.TimeSegment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.ewm.stats.server.enums.RollupGranularity.COARSEST_FIRST;
+import static ru.practicum.ewm.stats.server.enums.RollupGranularity.DAY;
+import static ru.practicum.ewm.stats.server.enums.RollupGranularity.HOUR;
+import static ru.practicum.ewm.stats.server.enums.RollupGranularity.MINUTE;
+
+class WindowPlannerTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    @Test
+    void splitsIntoCoarsestBucketsAndRawEdges() {
+        LocalDateTime from = BASE.plusHours(22).plusMinutes(58).plusSeconds(30);
+        LocalDateTime to = BASE.plusDays(2).plusHours(1).plusMinutes(2).plusSeconds(10);
+
+        assertThat(WindowPlanner.plan(from, to, COARSEST_FIRST)).containsExactly(
+                new TimeSegment(null, from, BASE.plusHours(22).plusMinutes(59)),
+                new TimeSegment(MINUTE, BASE.plusHours(22).plusMinutes(59), BASE.plusHours(23)),
+                new TimeSegment(HOUR, BASE.plusHours(23), BASE.plusDays(1)),
+                new TimeSegment(DAY, BASE.plusDays(1), BASE.plusDays(2)),
+                new TimeSegment(HOUR, BASE.plusDays(2), BASE.plusDays(2).plusHours(1)),
+                new TimeSegment(MINUTE, BASE.plusDays(2).plusHours(1), BASE.plusDays(2).plusHours(1).plusMinutes(2)),
+                new TimeSegment(null, BASE.plusDays(2).plusHours(1).plusMinutes(2), to));
+    }
+
+    @Test
+    void alignedWindowIsSingleBucket() {
+        assertThat(WindowPlanner.plan(BASE, BASE.plusDays(3), COARSEST_FIRST))
+                .containsExactly(new TimeSegment(DAY, BASE, BASE.plusDays(3)));
+        assertThat(WindowPlanner.plan(BASE.plusHours(1), BASE.plusHours(5), COARSEST_FIRST))
+                .containsExactly(new TimeSegment(HOUR, BASE.plusHours(1), BASE.plusHours(5)));
+    }
+
+    @Test
+    void shortOrEmptyWindowIsRawOrNothing() {
+        LocalDateTime from = BASE.plusSeconds(10);
+
+        assertThat(WindowPlanner.plan(from, from.plusSeconds(30), COARSEST_FIRST))
+                .containsExactly(new TimeSegment(null, from, from.plusSeconds(30)));
+        assertThat(WindowPlanner.plan(from, from, COARSEST_FIRST)).isEmpty();
+        assertThat(WindowPlanner.plan(from, BASE, COARSEST_FIRST)).isEmpty();
+    }
+
+    @Test
+    void usesOnlyGivenGranularities() {
+        LocalDateTime from = BASE.plusMinutes(30);
+        LocalDateTime to = BASE.plusDays(1).plusMinutes(30);
+
+        assertThat(WindowPlanner.plan(from, to, List.of(HOUR))).containsExactly(
+                new TimeSegment(null, from, BASE.plusHours(1)),
+                new TimeSegment(HOUR, BASE.plusHours(1), BASE.plusDays(1)),
+                new TimeSegment(null, BASE.plusDays(1), to));
+        assertThat(WindowPlanner.plan(from, to, List.of()))
+                .containsExactly(new TimeSegment(null, from, to));
+    }
+
+    // Сегменты идут встык, покрывают весь интервал и выровнены по своей гранулярности
+    @Test
+    void segmentsTileWindowWithoutGapsOrOverlaps() {
+        Random random = new Random(11);
+        for (int i = 0; i < 5_000; i++) {
+            LocalDateTime from = BASE.plusSeconds(random.nextInt(10 * 24 * 3600));
+            LocalDateTime to = from.plusSeconds(random.nextInt(5 * 24 * 3600));
+            List<TimeSegment> segments = WindowPlanner.plan(from, to, COARSEST_FIRST);
+
+            LocalDateTime cursor = from;
+            for (TimeSegment segment : segments) {
+                assertThat(segment.from()).isEqualTo(cursor);
+                assertThat(segment.from()).isBefore(segment.to());
+                if (!segment.isRaw()) {
+                    RollupGranularity granularity = segment.granularity();
+                    assertThat(granularity.floor(segment.from())).isEqualTo(segment.from());
+                    assertThat(granularity.floor(segment.to())).isEqualTo(segment.to());
+                } else {
+                    assertThat(MINUTE.ceil(segment.from())).isAfterOrEqualTo(MINUTE.floor(segment.to()));
+                }
+                cursor = segment.to();
+            }
+            assertThat(cursor).isEqualTo(segments.isEmpty() ? from : to);
+            assertThat(segments.stream().filter(TimeSegment::isRaw)).hasSizeLessThanOrEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.ewm.stats.server.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Хэш детерминирован, поэтому оценки для одних и тех же ip воспроизводятся от запуска к запуску
+class HyperLogLogTest {
+
+    // Стандартная ошибка 1.6%, на двадцати оценках среднеквадратичная ошибка не должна заметно её превышать
+    @Test
+    void estimateStaysWithinStandardError() {
+        double squaredError = 0;
+        int runs = 0;
+        for (int cardinality : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            for (int seed = 0; seed < 5; seed++) {
+                HyperLogLog sketch = sketchOf(seed * 10_000_000, cardinality);
+                double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+                assertThat(error).as("n=%d seed=%d", cardinality, seed).isLessThan(0.05);
+                squaredError += error * error;
+                runs++;
+            }
+        }
+        assertThat(Math.sqrt(squaredError / runs)).isLessThan(0.02);
+    }
+
+    @Test
+    void smallSetsAreNearlyExact() {
+        assertThat(new HyperLogLog().estimate()).isZero();
+        assertThat(sketchOf(0, 1).estimate()).isEqualTo(1);
+        assertThat(sketchOf(0, 100).estimate()).isBetween(98L, 102L);
+    }
+
+    @Test
+    void duplicatesDoNotChangeEstimate() {
+        HyperLogLog sketch = sketchOf(0, 5_000);
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(ip(i));
+        }
+        assertThat(sketch.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void sparseFormatRoundTrips() {
+        HyperLogLog sketch = sketchOf(0, 200);
+        byte[] bytes = sketch.toBytes();
+        assertThat(bytes[0]).isEqualTo((byte) 1);
+        assertThat(bytes.length).isLessThan(1 << HyperLogLog.PRECISION);
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+
+    @Test
+    void denseFormatRoundTrips() {
+        HyperLogLog sketch = sketchOf(0, 50_000);
+        byte[] bytes = sketch.toBytes();
+        assertThat(bytes[0]).isEqualTo((byte) 0);
+        assertThat(bytes.length).isEqualTo((1 << HyperLogLog.PRECISION) + 1);
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+
+    @Test
+    void mergeIsCommutativeAndIdempotent() {
+        HyperLogLog left = sketchOf(0, 30_000);
+        HyperLogLog right = sketchOf(20_000, 30_000);
+        byte[] leftThenRight = HyperLogLog.fromBytes(left.toBytes()).merge(right).toBytes();
+        byte[] rightThenLeft = HyperLogLog.fromBytes(right.toBytes()).merge(left).toBytes();
+        assertThat(leftThenRight).isEqualTo(rightThenLeft);
+
+        HyperLogLog merged = HyperLogLog.fromBytes(leftThenRight);
+        assertThat(merged.merge(right).merge(left).toBytes()).isEqualTo(leftThenRight);
+        assertThat(Math.abs(merged.estimate() - 50_000) / 50_000.0).isLessThan(0.05);
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog union = sketchOf(0, 40_000);
+        HyperLogLog merged = sketchOf(0, 10_000).merge(sketchOf(10_000, 30_000));
+        assertThat(merged.toBytes()).isEqualTo(union.toBytes());
+    }
+
+    private static HyperLogLog sketchOf(int from, int count) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < from + count; i++) {
+            sketch.add(ip(i));
+        }
+        return sketch;
+    }
+
+    private static String ip(int i) {
+        return (i >>> 24 & 0xFF) + "." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.ewm.stats.server.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        SpaceSaving summary = new SpaceSaving(10);
+        summary.add("/a", 3);
+        summary.add("/b", 1);
+        summary.add("/a", 2);
+        summary.add("/c", 4);
+
+        assertThat(SpaceSaving.top(List.of(summary), 3)).containsExactly(
+                new SpaceSaving.Entry("/a", 5, 0),
+                new SpaceSaving.Entry("/c", 4, 0),
+                new SpaceSaving.Entry("/b", 1, 0));
+        assertThat(summary.getTotal()).isEqualTo(10);
+        assertThat(summary.size()).isEqualTo(3);
+    }
+
+    @Test
+    void evictsMinimumAndKeepsItsCountAsError() {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.add("/a", 5);
+        summary.add("/b", 2);
+        summary.add("/c", 1);
+
+        assertThat(summary.size()).isEqualTo(2);
+        assertThat(SpaceSaving.top(List.of(summary), 2)).containsExactly(
+                new SpaceSaving.Entry("/a", 5, 0),
+                new SpaceSaving.Entry("/c", 3, 2));
+    }
+
+    // Элемент с частотой больше total / capacity обязан попасть в сводку, оценка не меньше истинной
+    // и завышена не больше чем на error
+    @Test
+    void heavyHittersAreGuaranteedOnSkewedStream() {
+        int capacity = 50;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String uri = random.nextInt(4) == 0 ? "/hot/" + random.nextInt(5) : "/cold/" + random.nextInt(10_000);
+            summary.add(uri, 1);
+            exact.merge(uri, 1L, Long::sum);
+        }
+        List<SpaceSaving.Entry> top = SpaceSaving.top(List.of(summary), capacity);
+        Map<String, SpaceSaving.Entry> byItem = new HashMap<>();
+        top.forEach(entry -> byItem.put(entry.item(), entry));
+
+        exact.forEach((uri, count) -> {
+            if (count > summary.getTotal() / capacity) {
+                assertThat(byItem).containsKey(uri);
+            }
+        });
+        for (SpaceSaving.Entry entry : top) {
+            long truth = exact.getOrDefault(entry.item(), 0L);
+            assertThat(entry.count()).isGreaterThanOrEqualTo(truth);
+            assertThat(entry.count() - entry.error()).isLessThanOrEqualTo(truth);
+        }
+        assertThat(top.subList(0, 5)).allMatch(entry -> entry.item().startsWith("/hot/"));
+    }
+
+    @Test
+    void topMergesSummariesAndLimitsResult() {
+        SpaceSaving first = new SpaceSaving(10);
+        first.add("/a", 4);
+        first.add("/b", 1);
+        SpaceSaving second = new SpaceSaving(10);
+        second.add("/b", 6);
+        second.add("/c", 2);
+
+        assertThat(SpaceSaving.top(List.of(first, second), 2)).containsExactly(
+                new SpaceSaving.Entry("/b", 7, 0),
+                new SpaceSaving.Entry("/a", 4, 0));
+    }
+
+    @Test
+    void mergedSummaryKeepsTotalsAndMostFrequentItems() {
+        SpaceSaving first = new SpaceSaving(3);
+        first.add("/a", 10);
+        first.add("/b", 1);
+        SpaceSaving second = new SpaceSaving(3);
+        second.add("/c", 7);
+        second.add("/d", 2);
+        second.add("/a", 1);
+
+        SpaceSaving merged = SpaceSaving.merge(List.of(first, second), 3);
+
+        assertThat(merged.size()).isEqualTo(3);
+        assertThat(merged.getTotal()).isEqualTo(21);
+        assertThat(SpaceSaving.top(List.of(merged), 3)).containsExactly(
+                new SpaceSaving.Entry("/a", 11, 0),
+                new SpaceSaving.Entry("/c", 7, 0),
+                new SpaceSaving.Entry("/d", 2, 0));
+
+        merged.add("/e", 1);
+        assertThat(SpaceSaving.top(List.of(merged), 3)).contains(new SpaceSaving.Entry("/e", 3, 2));
+    }
+}
@@ -0,0 +1,227 @@
+package ru.practicum.ewm.stats.server.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.ewm.stats.server.exception.HitQueueOverflowException;
+import ru.practicum.ewm.stats.server.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitSpoolTest {
+    // все uri одной длины, поэтому все записи одного размера
+    private static final int RECORD = 8 + (2 + 3) + (2 + 7) + (2 + 8) + 12;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsAcrossSegmentsAndReleasesTransferredOnes() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 2 * RECORD, 1 << 20, true)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(List.of(hit(2 * i), hit(2 * i + 1)));
+            }
+            assertThat(segments()).hasSize(10);
+            assertThat(spool.size()).isEqualTo(20 * RECORD);
+            assertThat(spool.getEnd()).isEqualTo(new SpoolPosition(10, 2 * RECORD));
+            assertThat(uris(readAll(spool, spool.getStart()))).isEqualTo(urisOf(0, 20));
+
+            spool.release(new SpoolPosition(4, RECORD));
+
+            assertThat(segments()).hasSize(7);
+            assertThat(spool.size()).isEqualTo(14 * RECORD);
+            assertThat(spool.getStart()).isEqualTo(new SpoolPosition(4, 0));
+            assertThat(uris(readAll(spool, new SpoolPosition(1, 0)))).isEqualTo(urisOf(6, 20));
+        }
+    }
+
+    @Test
+    void rejectsAppendBeyondMaxSize() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 3 * RECORD, true)) {
+            spool.append(List.of(hit(0), hit(1)));
+
+            assertThatThrownBy(() -> spool.append(List.of(hit(2), hit(3))))
+                    .isInstanceOf(HitQueueOverflowException.class);
+            spool.append(List.of(hit(2)));
+            assertThat(spool.size()).isEqualTo(3 * RECORD);
+        }
+    }
+
+    // Несколько потоков пишут одновременно: каждый хит после возврата из append зафиксирован и читается ровно раз
+    @Test
+    void concurrentAppendsAreAllDurable() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (HitSpool spool = new HitSpool(directory, 16 * RECORD, 1 << 20, true);
+             ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        spool.append(List.of(hit(thread * perThread + i)));
+                        assertThat(spool.getEnd().compareTo(new SpoolPosition(1, 0))).isPositive();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertThat(spool.size()).isEqualTo((long) threads * perThread * RECORD);
+            assertThat(uris(readAll(spool, spool.getStart())))
+                    .containsExactlyInAnyOrderElementsOf(urisOf(0, threads * perThread));
+        }
+    }
+
+    @Test
+    void tornTailIsCutOnOpen() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            spool.append(List.of(hit(0), hit(1), hit(2)));
+        }
+        Path segment = segments().getFirst();
+        byte[] record = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(record, RECORD / 2), StandardOpenOption.APPEND);
+
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            assertThat(Files.size(segment)).isEqualTo(3 * RECORD);
+            assertThat(spool.getEnd()).isEqualTo(new SpoolPosition(1, 3 * RECORD));
+            spool.append(List.of(hit(3)));
+            assertThat(uris(readAll(spool, spool.getStart()))).isEqualTo(urisOf(0, 4));
+            assertThat(spool.getSkippedBytes()).isZero();
+        }
+    }
+
+    @Test
+    void lastRecordWithWrongCrcIsCutOnOpen() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            spool.append(List.of(hit(0), hit(1), hit(2)));
+        }
+        Path segment = segments().getFirst();
+        flipByte(segment, 3 * RECORD - 1);
+
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            assertThat(Files.size(segment)).isEqualTo(2 * RECORD);
+            assertThat(uris(readAll(spool, spool.getStart()))).isEqualTo(urisOf(0, 2));
+        }
+    }
+
+    // Повреждение посреди последнего сегмента — не недописанный хвост: целые записи за ним остаются
+    @Test
+    void corruptRecordInsideLastSegmentIsSkipped() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            spool.append(List.of(hit(0), hit(1), hit(2), hit(3)));
+        }
+        Path segment = segments().getFirst();
+        flipByte(segment, RECORD + 20);
+
+        try (HitSpool spool = new HitSpool(directory, 1 << 20, 1 << 20, true)) {
+            assertThat(Files.size(segment)).isEqualTo(4 * RECORD);
+            assertThat(uris(readAll(spool, spool.getStart()))).containsExactly("/e/0000", "/e/0002", "/e/0003");
+            assertThat(spool.getSkippedBytes()).isEqualTo(RECORD);
+        }
+    }
+
+    @Test
+    void truncatedLastRecordOfSealedSegmentKeepsEarlierRecords() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 3 * RECORD, 1 << 20, true)) {
+            spool.append(List.of(hit(0), hit(1), hit(2)));
+            spool.append(List.of(hit(3), hit(4)));
+        }
+        Path sealed = segments().getFirst();
+        try (RandomAccessFile file = new RandomAccessFile(sealed.toFile(), "rw")) {
+            file.setLength(3 * RECORD - 5);
+        }
+
+        try (HitSpool spool = new HitSpool(directory, 3 * RECORD, 1 << 20, true)) {
+            assertThat(uris(readAll(spool, spool.getStart()))).containsExactly("/e/0000", "/e/0001", "/e/0003",
+                    "/e/0004");
+            assertThat(spool.getSkippedBytes()).isEqualTo(RECORD - 5);
+        }
+    }
+
+    @Test
+    void corruptRecordOfSealedSegmentIsSkippedAndCountedOnce() throws IOException {
+        try (HitSpool spool = new HitSpool(directory, 4 * RECORD, 1 << 20, true)) {
+            spool.append(List.of(hit(0), hit(1), hit(2), hit(3)));
+            spool.append(List.of(hit(4)));
+        }
+        Path sealed = segments().getFirst();
+        flipByte(sealed, RECORD + 1);
+        flipByte(sealed, 3 * RECORD + 30);
+
+        try (HitSpool spool = new HitSpool(directory, 4 * RECORD, 1 << 20, true)) {
+            assertThat(uris(readAll(spool, spool.getStart()))).containsExactly("/e/0000", "/e/0002", "/e/0004");
+            assertThat(spool.getSkippedBytes()).isEqualTo(2 * RECORD);
+
+            // повторное чтение после неудачного переноса не увеличивает счётчик
+            assertThat(uris(readAll(spool, spool.getStart()))).hasSize(3);
+            assertThat(spool.getSkippedBytes()).isEqualTo(2 * RECORD);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static List<EndpointHit> readAll(HitSpool spool, SpoolPosition from) throws IOException {
+        List<EndpointHit> hits = new ArrayList<>();
+        SpoolPosition position = from;
+        while (true) {
+            SpoolBatch batch = spool.read(position, 3);
+            if (batch.next().equals(position)) {
+                return hits;
+            }
+            hits.addAll(batch.hits());
+            position = batch.next();
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0x5A);
+        }
+    }
+
+    private static EndpointHit hit(int i) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(String.format("/e/%04d", i))
+                .ip("10.0.0.1")
+                .createdDate(LocalDateTime.of(2026, 3, 1, 12, 0).plusSeconds(i))
+                .build();
+    }
+
+    private static List<String> uris(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getUri).toList();
+    }
+
+    private static List<String> urisOf(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> String.format("/e/%04d", i)).toList();
+    }
+}
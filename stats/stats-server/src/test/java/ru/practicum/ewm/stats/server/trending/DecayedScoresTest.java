@@ -0,0 +1,135 @@
+package ru.practicum.ewm.stats.server.trending;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.server.model.AppUri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DecayedScoresTest {
+    private static final long HALF_LIFE = 3600;
+    // реальное время в секундах: λ·t порядка 10^5, счёт держится только благодаря логарифму
+    private static final long NOW = 1_790_000_000L;
+
+    @Test
+    void scoreHalvesEveryHalfLife() {
+        DecayedScores scores = new DecayedScores(HALF_LIFE, 100);
+        scores.add("app", "/a", NOW, 1);
+
+        assertThat(scores.top("app", 1, NOW).getFirst().score()).isCloseTo(1.0, within(1e-9));
+        assertThat(scores.top("app", 1, NOW + HALF_LIFE).getFirst().score()).isCloseTo(0.5, within(1e-9));
+        assertThat(scores.top("app", 1, NOW + 3 * HALF_LIFE).getFirst().score()).isCloseTo(0.125, within(1e-9));
+    }
+
+    @Test
+    void scoreMatchesBruteForceSumOfDecayedHits() {
+        DecayedScores scores = new DecayedScores(HALF_LIFE, 100);
+        Map<String, Double> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            String uri = "/u" + random.nextInt(20);
+            long second = NOW - random.nextInt(7 * 24 * 3600);
+            int weight = 1 + random.nextInt(3);
+            scores.add("app", uri, second, weight);
+            expected.merge(uri, weight * Math.pow(2, -(double) (NOW - second) / HALF_LIFE), Double::sum);
+        }
+
+        List<TrendingScore> top = scores.top("app", 20, NOW);
+        assertThat(top).hasSize(20);
+        for (TrendingScore score : top) {
+            assertThat(score.score()).isCloseTo(expected.get(score.uri()), within(1e-9 * expected.get(score.uri())));
+        }
+        for (int i = 1; i < top.size(); i++) {
+            assertThat(top.get(i - 1).score()).isGreaterThanOrEqualTo(top.get(i).score());
+        }
+    }
+
+    @Test
+    void recentHitOutranksOlderBurst() {
+        DecayedScores scores = new DecayedScores(HALF_LIFE, 100);
+        scores.add("app", "/old", NOW - 5 * HALF_LIFE, 20);
+        scores.add("app", "/new", NOW, 1);
+        scores.add("other", "/other", NOW, 100);
+
+        assertThat(scores.top("app", 2, NOW)).extracting(TrendingScore::uri).containsExactly("/new", "/old");
+        assertThat(scores.top(null, 1, NOW)).extracting(TrendingScore::uri).containsExactly("/other");
+    }
+
+    @Test
+    void topAddsScoresOfOtherInstances() {
+        DecayedScores own = new DecayedScores(HALF_LIFE, 100);
+        own.add("app", "/a", NOW, 1);
+        own.add("app", "/b", NOW, 1);
+        DecayedScores other = new DecayedScores(HALF_LIFE, 100);
+        other.add("app", "/a", NOW - HALF_LIFE, 2);
+        other.add("app", "/c", NOW, 3);
+        other.add("second", "/d", NOW, 1);
+
+        List<TrendingScore> top = own.top("app", 3, NOW, other);
+        assertThat(top).extracting(TrendingScore::uri).containsExactly("/c", "/a", "/b");
+        assertThat(top.get(0).score()).isCloseTo(3.0, within(1e-9));
+        assertThat(top.get(1).score()).isCloseTo(2.0, within(1e-9));
+        assertThat(top.get(2).score()).isCloseTo(1.0, within(1e-9));
+        assertThat(own.top(null, 10, NOW, other)).extracting(TrendingScore::uri)
+                .containsExactlyInAnyOrder("/a", "/b", "/c", "/d");
+    }
+
+    @Test
+    void restoredScoreEqualsOriginalAndIsNotDirty() {
+        DecayedScores original = new DecayedScores(HALF_LIFE, 100);
+        original.add("app", "/a", NOW - 100, 5);
+        original.add("app", "/b", NOW, 1);
+        Map<AppUri, Double> snapshot = new HashMap<>();
+        original.drainChanges(snapshot::put, key -> {
+        });
+        assertThat(snapshot).hasSize(2);
+
+        DecayedScores restored = new DecayedScores(HALF_LIFE, 100);
+        snapshot.forEach((key, logScore) -> restored.restore(key.app(), key.uri(), logScore));
+
+        assertThat(restored.top("app", 2, NOW)).isEqualTo(original.top("app", 2, NOW));
+        List<AppUri> changed = new ArrayList<>();
+        restored.drainChanges((key, logScore) -> changed.add(key), changed::add);
+        assertThat(changed).isEmpty();
+    }
+
+    @Test
+    void drainChangesReportsUpdatesOnce() {
+        DecayedScores scores = new DecayedScores(HALF_LIFE, 100);
+        scores.add("app", "/a", NOW, 1);
+        List<AppUri> changed = new ArrayList<>();
+        scores.drainChanges((key, logScore) -> changed.add(key), key -> {
+        });
+        scores.drainChanges((key, logScore) -> changed.add(key), key -> {
+        });
+        assertThat(changed).containsExactly(new AppUri("app", "/a"));
+
+        scores.add("app", "/a", NOW, 1);
+        scores.markDirty(new AppUri("app", "/missing"));
+        changed.clear();
+        scores.drainChanges((key, logScore) -> changed.add(key), key -> {
+        });
+        assertThat(changed).containsExactly(new AppUri("app", "/a"));
+    }
+
+    @Test
+    void pruneEvictsWeakestAndReportsThem() {
+        DecayedScores scores = new DecayedScores(HALF_LIFE, 10);
+        for (int i = 0; i < 12; i++) {
+            scores.add("app", "/u" + i, NOW - (12 - i) * HALF_LIFE, 1);
+        }
+
+        assertThat(scores.size()).isEqualTo(9);
+        List<AppUri> deleted = new ArrayList<>();
+        scores.drainChanges((key, logScore) -> {
+        }, deleted::add);
+        assertThat(deleted).extracting(AppUri::uri).containsExactlyInAnyOrder("/u0", "/u1", "/u2");
+        assertThat(scores.top("app", 20, NOW)).extracting(TrendingScore::uri).doesNotContain("/u0", "/u1", "/u2");
+    }
+}